@@ -0,0 +1,101 @@
+package com.recinfo;
+
+import com.recinfo.benchmark.Dataset;
+import com.recinfo.collection.InfoNeedJudgements;
+import com.recinfo.metrics.MetricEngine;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of a ranking with the embeddable API, in nanoseconds per topic. Every invocation evaluates the next topic
+ * of the dataset, so the time of an operation is the time of a topic, and the gc profiler of the jmh task shows that
+ * the evaluations do not allocate. The engine used to evaluate the files is measured the same way to compare them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RankingEvaluatorBenchmark {
+    private final MetricEngine engine = new MetricEngine(10, 45);
+    private String[] infoNeeds;
+    private InfoNeedJudgements[] judgements;
+    private int[][] rankings;
+    private RankingEvaluator common;
+    private RankingEvaluator every;
+
+    /**
+     * Position of the next topic and the results of every thread.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int topic;
+        final double[] results = new double[16];
+
+        int next(int topics) {
+            int retval = topic;
+            topic = retval + 1 == topics ? 0 : retval + 1;
+            return retval;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp(Dataset dataset) {
+        List<String> ids = new ArrayList<>(dataset.documents.getInfoNeeds());
+        infoNeeds = ids.toArray(new String[0]);
+        judgements = new InfoNeedJudgements[infoNeeds.length];
+        rankings = new int[infoNeeds.length][];
+        // The topics are the positions of the information needs, the documents keep the ids of the dictionary
+        Qrels.Builder builder = new Qrels.Builder();
+        for (int t = 0; t < infoNeeds.length; t++) {
+            judgements[t] = dataset.judgements.getJudgementsByInfoNeed(infoNeeds[t]);
+            rankings[t] = dataset.documents.getDocumentsByInfoNeed(infoNeeds[t]);
+            for (int i = 0; i < judgements[t].getNumJudged(); i++) {
+                builder.add(t, judgements[t].getDocument(i), judgements[t].getRelevanceAt(i));
+            }
+        }
+        Qrels qrels = builder.build();
+        common = new RankingEvaluator(qrels, Measure.averagePrecisionAt(45), Measure.precisionAt(10),
+                Measure.ndcgAt(10));
+        every = new RankingEvaluator(qrels, Measure.precision(), Measure.recall(), Measure.f1Score(),
+                Measure.precisionAt(10), Measure.recallAt(10), Measure.averagePrecisionAt(1000), Measure.ndcgAt(10),
+                Measure.unjudged(), Measure.bpref(), Measure.inferredAveragePrecision(),
+                Measure.condensedAveragePrecision());
+    }
+
+    @Benchmark
+    public double[] commonMeasures(Cursor cursor) {
+        int t = cursor.next(rankings.length);
+        common.evaluate(t, rankings[t], rankings[t].length, cursor.results, 0);
+        return cursor.results;
+    }
+
+    @Benchmark
+    public double[] everyMeasure(Cursor cursor) {
+        int t = cursor.next(rankings.length);
+        every.evaluate(t, rankings[t], rankings[t].length, cursor.results, 0);
+        return cursor.results;
+    }
+
+    /**
+     * Several tuning workers sharing the same judgements and evaluator.
+     */
+    @Benchmark
+    @Threads(4)
+    public double[] sharedByThreads(Cursor cursor) {
+        int t = cursor.next(rankings.length);
+        common.evaluate(t, rankings[t], rankings[t].length, cursor.results, 0);
+        return cursor.results;
+    }
+
+    @Benchmark
+    public void engine(Cursor cursor, Blackhole blackhole) {
+        int t = cursor.next(rankings.length);
+        blackhole.consume(engine.evaluate(infoNeeds[t], rankings[t], judgements[t]));
+    }
+}
@@ -0,0 +1,44 @@
+package com.recinfo.benchmark;
+
+import com.recinfo.collection.IdDictionary;
+import com.recinfo.collection.Judgements;
+import com.recinfo.collection.RecoveredDocuments;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Dataset used by the benchmarks: the bundled sample files or a synthetic collection of information needs x depth.
+ * The synthetic files are generated in build/jmh-data the first time they are used and reused later.
+ */
+@State(Scope.Benchmark)
+public class Dataset {
+    @Param({"sample", "50x100", "50x1000", "1000x100", "1000x1000", "10000x100", "10000x1000"})
+    public String dataset;
+
+    public String judgementsPath;
+    public String recoveredDocumentsPath;
+    public Judgements judgements;
+    public RecoveredDocuments documents;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if ("sample".equals(dataset)) {
+            judgementsPath = "zanguanRels.txt";
+            recoveredDocumentsPath = "equipo202.txt";
+        } else {
+            String[] size = dataset.split("x");
+            Path directory = Files.createDirectories(Paths.get("build", "jmh-data"));
+            SyntheticCollection collection = new SyntheticCollection(Integer.parseInt(size[0]),
+                    Integer.parseInt(size[1]), directory);
+            judgementsPath = collection.getJudgementsPath();
+            recoveredDocumentsPath = collection.getRecoveredDocumentsPath();
+        }
+        judgements = new Judgements(judgementsPath);
+        documents = new RecoveredDocuments(recoveredDocumentsPath, new IdDictionary(judgements.getDocuments()));
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.recinfo.benchmark;
+
+import com.recinfo.collection.IdDictionary;
+import com.recinfo.collection.Judgements;
+import com.recinfo.collection.RecoveredDocuments;
+import com.recinfo.metrics.MetricEngine;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Complete evaluation: loading of both files and every measure of every information need.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EvaluationBenchmark {
+    private final MetricEngine engine = new MetricEngine(10, 45);
+
+    @Benchmark
+    public void evaluate(Dataset dataset, Blackhole blackhole) {
+        Judgements judgements = new Judgements(dataset.judgementsPath);
+        RecoveredDocuments documents = new RecoveredDocuments(dataset.recoveredDocumentsPath,
+                new IdDictionary(judgements.getDocuments()));
+        for (String infoNeed : documents.getInfoNeeds()) {
+            blackhole.consume(engine.evaluate(infoNeed, documents.getDocumentsByInfoNeed(infoNeed),
+                    judgements.getJudgementsByInfoNeed(infoNeed)));
+        }
+    }
+
+    @Benchmark
+    public void evaluateLoaded(Dataset dataset, Blackhole blackhole) {
+        for (String infoNeed : dataset.documents.getInfoNeeds()) {
+            blackhole.consume(engine.evaluate(infoNeed, dataset.documents.getDocumentsByInfoNeed(infoNeed),
+                    dataset.judgements.getJudgementsByInfoNeed(infoNeed)));
+        }
+    }
+}
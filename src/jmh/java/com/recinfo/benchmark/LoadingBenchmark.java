@@ -0,0 +1,30 @@
+package com.recinfo.benchmark;
+
+import com.recinfo.collection.IdDictionary;
+import com.recinfo.collection.Judgements;
+import com.recinfo.collection.RecoveredDocuments;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading of the judgements and the recovered documents files.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadingBenchmark {
+
+    @Benchmark
+    public Judgements loadJudgements(Dataset dataset) {
+        return new Judgements(dataset.judgementsPath);
+    }
+
+    @Benchmark
+    public RecoveredDocuments loadRecoveredDocuments(Dataset dataset) {
+        return new RecoveredDocuments(dataset.recoveredDocumentsPath,
+                new IdDictionary(dataset.judgements.getDocuments()));
+    }
+}
@@ -0,0 +1,69 @@
+package com.recinfo.benchmark;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * Generates a judgements file and a recovered documents file with the same format than the bundled ones.
+ * The files only depend on the number of information needs, the depth of the rankings and the seed, so every run of
+ * the benchmarks uses the same data and files already generated are not written again.
+ */
+public class SyntheticCollection {
+    private static final long SEED = 20201017L;
+    private static final int DOCUMENTS_PER_INFO_NEED = 20000;
+    private static final float RELEVANT_RATE = 0.1f;
+    private static final float JUDGED_RATE = 0.5f;
+
+    private final Path judgements;
+    private final Path recoveredDocuments;
+
+    /**
+     * @param infoNeeds Number of information needs.
+     * @param depth Number of documents recovered per information need.
+     * @param directory Directory where the files are written.
+     * @throws IOException If the files can not be written.
+     */
+    public SyntheticCollection(int infoNeeds, int depth, Path directory) throws IOException {
+        this.judgements = directory.resolve("qrels-" + infoNeeds + "x" + depth + ".txt");
+        this.recoveredDocuments = directory.resolve("run-" + infoNeeds + "x" + depth + ".txt");
+        if (Files.exists(judgements) && Files.exists(recoveredDocuments)) {
+            return;
+        }
+        Random random = new Random(SEED);
+        Path qrelsTmp = directory.resolve(judgements.getFileName() + ".tmp");
+        Path runTmp = directory.resolve(recoveredDocuments.getFileName() + ".tmp");
+        try (BufferedWriter qrels = Files.newBufferedWriter(qrelsTmp);
+             BufferedWriter run = Files.newBufferedWriter(runTmp)) {
+            for (int t = 0; t < infoNeeds; t++) {
+                String infoNeed = (100 + t) + "-" + (1 + random.nextInt(5));
+                for (int rank = 0; rank < depth; rank++) {
+                    String document = "oai_zaguan.unizar.es_" + random.nextInt(DOCUMENTS_PER_INFO_NEED) + ".xml";
+                    run.write(infoNeed + "\t" + document + "\n");
+                    // Relevant documents are more likely at the top of the ranking
+                    boolean relevant = random.nextFloat() < RELEVANT_RATE * 2 * (depth - rank) / depth;
+                    if (relevant || random.nextFloat() < JUDGED_RATE) {
+                        qrels.write(infoNeed + "\t" + document + "\t" + (relevant ? 1 : 0) + "\n");
+                    }
+                }
+                // Relevant documents which are not recovered
+                for (int i = 0; i < depth * RELEVANT_RATE / 2; i++) {
+                    qrels.write(infoNeed + "\toai_zaguan.unizar.es_" + (DOCUMENTS_PER_INFO_NEED + i) + ".xml\t1\n");
+                }
+            }
+        }
+        // Renamed at the end so an interrupted generation is not reused
+        Files.move(qrelsTmp, judgements, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(runTmp, recoveredDocuments, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public String getJudgementsPath() {
+        return judgements.toString();
+    }
+
+    public String getRecoveredDocumentsPath() {
+        return recoveredDocuments.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package com.recinfo.metrics;
+
+import com.recinfo.benchmark.Dataset;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every measure computed over the rankings of every information need.
+ * The rankings are walked once in the setup, so the measures are benchmarked without the walk.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricBenchmark {
+    private RankingSweep[] sweeps;
+
+    @Setup(Level.Trial)
+    public void setUp(Dataset dataset) {
+        sweeps = dataset.documents.getInfoNeeds().stream()
+                .map(infoNeed -> new RankingSweep(dataset.documents.getDocumentsByInfoNeed(infoNeed),
+                        dataset.judgements.getJudgementsByInfoNeed(infoNeed)))
+                .toArray(RankingSweep[]::new);
+    }
+
+    @Benchmark
+    public void sweep(Dataset dataset, Blackhole blackhole) {
+        for (String infoNeed : dataset.documents.getInfoNeeds()) {
+            blackhole.consume(new RankingSweep(dataset.documents.getDocumentsByInfoNeed(infoNeed),
+                    dataset.judgements.getJudgementsByInfoNeed(infoNeed)));
+        }
+    }
+
+    @Benchmark
+    public void precision(Blackhole blackhole) {
+        for (RankingSweep sweep : sweeps)
+            blackhole.consume(MetricEngine.precision(sweep));
+    }
+
+    @Benchmark
+    public void recall(Blackhole blackhole) {
+        for (RankingSweep sweep : sweeps)
+            blackhole.consume(MetricEngine.recall(sweep));
+    }
+
+    @Benchmark
+    public void precisionAtK(Blackhole blackhole) {
+        for (RankingSweep sweep : sweeps)
+            blackhole.consume(MetricEngine.precisionAtK(sweep, 10));
+    }
+
+    @Benchmark
+    public void averagePrecision(Blackhole blackhole) {
+        for (RankingSweep sweep : sweeps)
+            blackhole.consume(MetricEngine.averagePrecision(sweep, 45));
+    }
+
+    @Benchmark
+    public void recallPrecision(Blackhole blackhole) {
+        for (RankingSweep sweep : sweeps)
+            blackhole.consume(MetricEngine.recallPrecision(sweep));
+    }
+
+    @Benchmark
+    public void interpolatedPrecision(Blackhole blackhole) {
+        for (RankingSweep sweep : sweeps)
+            blackhole.consume(MetricEngine.interpolatedPrecision(sweep));
+    }
+}
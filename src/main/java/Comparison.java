@@ -0,0 +1,88 @@
+import com.recinfo.stats.SignificanceTests;
+
+import java.util.*;
+
+/**
+ * Comparison of the evaluations of several systems with paired significance tests over the per-topic scores of the
+ * average precision, the precision at 10 and the F1 score.
+ * Only the information needs evaluated in every system are compared, a score which is not a number (an average
+ * precision without relevant documents) is compared as 0.
+ */
+public class Comparison {
+    private static final String[] MEASURES = {"AVERAGE_PRECISION", "PREC@10", "F1 SCORE"};
+
+    private final String[] names;
+    private final Metrics[] results;
+    private final List<String> infoNeeds;
+
+    /**
+     * @param names Name of every system.
+     * @param results Evaluation of every system.
+     */
+    public Comparison(String[] names, Metrics[] results) {
+        this.names = names;
+        this.results = results;
+        this.infoNeeds = new ArrayList<>(results[0].getInfoNeeds());
+        for (Metrics metrics : results)
+            infoNeeds.retainAll(metrics.getInfoNeeds());
+    }
+
+    /**
+     * @param metrics Evaluation of a system.
+     * @param measure Index of the measure in {@link #MEASURES}.
+     * @return The score of every compared information need.
+     */
+    private double[] scores(Metrics metrics, int measure) {
+        double[] retval = new double[infoNeeds.size()];
+        for (int i = 0; i < retval.length; i++) {
+            String infoNeed = infoNeeds.get(i);
+            float score;
+            if (measure == 0)
+                score = metrics.getAveragePrecision(infoNeed);
+            else if (measure == 1)
+                score = metrics.getPrecToK(infoNeed);
+            else
+                score = metrics.getF1Score(infoNeed);
+            retval[i] = Float.isNaN(score) ? 0 : score;
+        }
+        return retval;
+    }
+
+    /**
+     * Runs every test between every pair of systems.
+     * @param iterations Number of iterations of the randomization and bootstrap tests.
+     * @param seed Seed of the randomized tests.
+     * @param threads Number of threads of the randomized tests, 0 to use every core.
+     * @return A table with the p-values of every pair of systems and measure.
+     */
+    public String printComparison(int iterations, long seed, int threads) {
+        SignificanceTests tests = new SignificanceTests(threads);
+        StringBuilder retval = new StringBuilder();
+        retval.append("TOPICS\t").append(infoNeeds.size()).append("\n");
+        retval.append("MEASURE\tRUN A\tRUN B\tMEAN A\tMEAN B\tT-TEST\tWILCOXON\tRANDOMIZATION\tBOOTSTRAP\n");
+        for (int m = 0; m < MEASURES.length; m++) {
+            double[][] scores = new double[results.length][];
+            for (int r = 0; r < results.length; r++)
+                scores[r] = scores(results[r], m);
+            for (int a = 0; a < results.length; a++) {
+                for (int b = a + 1; b < results.length; b++) {
+                    retval.append(MEASURES[m]).append("\t").append(names[a]).append("\t").append(names[b]);
+                    retval.append("\t").append(mean(scores[a])).append("\t").append(mean(scores[b]));
+                    retval.append("\t").append(SignificanceTests.pairedTTest(scores[a], scores[b]));
+                    retval.append("\t").append(SignificanceTests.wilcoxon(scores[a], scores[b]));
+                    retval.append("\t").append(tests.randomization(scores[a], scores[b], iterations, seed));
+                    retval.append("\t").append(tests.bootstrap(scores[a], scores[b], iterations, seed));
+                    retval.append("\n");
+                }
+            }
+        }
+        return retval.toString();
+    }
+
+    private static double mean(double[] values) {
+        double total = 0;
+        for (double value : values)
+            total += value;
+        return total / values.length;
+    }
+}
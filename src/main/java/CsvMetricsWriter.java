@@ -0,0 +1,88 @@
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the measures as CSV: a header, a row per information need and a last row with the averages, whose information
+ * need is "all". The recall-precision curves are written as a column per recall level.
+ */
+public class CsvMetricsWriter extends MetricsWriter {
+    private boolean header;
+
+    public CsvMetricsWriter(Writer out) {
+        super(out);
+    }
+
+    @Override
+    public void writeInfoNeed(Metrics metrics, String infoNeed) throws IOException {
+        write(metrics, metrics.getIndex(infoNeed), infoNeed);
+    }
+
+    @Override
+    public void writeTotal(Metrics metrics) throws IOException {
+        write(metrics, metrics.computeTotal(), "all");
+    }
+
+    /**
+     * The bounds are written as the rows of the information needs "lower" and "upper".
+     */
+    @Override
+    public void writeConfidenceIntervals(Metrics metrics, int lower, double confidence, int resamples)
+            throws IOException {
+        write(metrics, lower, "lower");
+        write(metrics, lower + 1, "upper");
+    }
+
+    private void write(Metrics metrics, int i, String infoNeed) throws IOException {
+        if (!header) {
+            // The measures registered in the engine are known with the first information need
+            line.append("info_need,precision,recall,f1_score,prec@10,average_precision");
+            for (int a = 0; a < metrics.getAccumulatedCount(); a++) {
+                line.append(',');
+                appendText(metrics.getAccumulatedName(a));
+            }
+            for (float level : Metrics.recallsRP)
+                line.append(",recall_precision@").append(level);
+            for (float level : Metrics.recalls)
+                line.append(",interpolated_precision@").append(level);
+            line.append('\n');
+            header = true;
+        }
+        appendText(infoNeed);
+        line.append(',').append(metrics.getPrecision(i));
+        line.append(',').append(metrics.getRecall(i));
+        line.append(',').append(metrics.getF1Score(i));
+        line.append(',').append(metrics.getPrecToK(i));
+        line.append(',').append(metrics.getAveragePrecision(i));
+        for (int a = 0; a < metrics.getAccumulatedCount(); a++)
+            line.append(',').append(metrics.getAccumulated(i, a));
+        for (int r = 0; r < Metrics.recallsRP.length; r++)
+            line.append(',').append(metrics.getRecallPrecision(i, r));
+        for (int r = 0; r < Metrics.recalls.length; r++)
+            line.append(',').append(metrics.getInterpolatedPrecision(i, r));
+        line.append('\n');
+        flushLine();
+    }
+
+    /**
+     * Appends a field, quoted if it contains a comma, a quote or a line break.
+     */
+    private void appendText(String text) {
+        boolean quote = false;
+        for (int c = 0; c < text.length() && !quote; c++) {
+            char ch = text.charAt(c);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) {
+            line.append(text);
+            return;
+        }
+        line.append('"');
+        for (int c = 0; c < text.length(); c++) {
+            char ch = text.charAt(c);
+            if (ch == '"')
+                line.append('"');
+            line.append(ch);
+        }
+        line.append('"');
+    }
+}
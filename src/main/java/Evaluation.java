@@ -1,254 +1,584 @@
+import com.recinfo.collection.CompiledFiles;
+import com.recinfo.collection.IdDictionary;
 import com.recinfo.collection.Judgements;
-import com.recinfo.collection.RecoveredDocument;
+import com.recinfo.collection.JudgementsCache;
 import com.recinfo.collection.RecoveredDocuments;
+import com.recinfo.collection.RecoveredDocumentsStream;
+import com.recinfo.collection.RunFusion;
+import com.recinfo.concurrent.Parallel;
+import com.recinfo.metrics.ErrAccumulator;
+import com.recinfo.metrics.MeasuresCache;
+import com.recinfo.metrics.MetricEngine;
+import com.recinfo.metrics.NdcgAccumulator;
+import com.recinfo.metrics.RbpAccumulator;
+import com.recinfo.metrics.TopicMeasures;
+import com.recinfo.profile.Profiler;
+import com.recinfo.stats.ConfidenceIntervals;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.function.IntConsumer;
 
 /**
  * Evaluation of a information retrieval system.
  * Calculate a set of metrics
  */
 public class Evaluation {
-
+    // Bootstrap confidence intervals of the averages, 0 resamples to not compute them
+    private int resamples = 0;
+    private double confidence = 0.95;
+    private long seed;
 
     Evaluation(String[] args) throws IOException {
 
         String relevancePath = "qrels";
         String outputPath = "index";
         String recoverSistemResultPath = "index";
+        int threads = 1;
+        boolean stream = false;
+        boolean incremental = false;
+        String format = "text";
+        String batch = null;
+        String fuse = null;
+        String fusion = "rrf";
+        double[] rrfK = {60};
+        int[] fusionDepths = {0};
+        boolean compile = false;
+        String compare = null;
+        int iterations = 100000;
+        String simulate = null;
+        double[] sampleRates = {0.1, 0.3, 0.5};
+        int[] poolDepths = new int[0];
+        int samples = 100;
+        String power = null;
+        int trials = 1000;
+        double alpha = 0.05;
+        seed = System.nanoTime();
+        int[] cutoffs = new int[0];
+        int ndcg = 0;
+        int err = 0;
+        boolean condensed = false;
+        double rbp = 0;
+        int serverPort = -1;
+        long cacheMemory = 512;
+        boolean profile = false;
+        String profileJson = null;
+        String compileQrels = null;
+        String compileResults = null;
 
         for (int i = 0; i < args.length; i++) {
             if ("-qrels".equals(args[i])) {
                 relevancePath = args[i + 1];
+                compileQrels = relevancePath;
                 i++;
             } else if ("-results".equals(args[i])) {
                 recoverSistemResultPath = args[i + 1];
+                compileResults = recoverSistemResultPath;
+                i++;
+            } else if ("-compare".equals(args[i])) {
+                compare = args[i + 1];
+                i++;
+            } else if ("-iterations".equals(args[i])) {
+                iterations = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if ("-simulate".equals(args[i])) {
+                simulate = args[i + 1];
+                i++;
+            } else if ("-sampleRates".equals(args[i])) {
+                sampleRates = Arrays.stream(args[i + 1].split(",")).mapToDouble(Double::parseDouble).toArray();
+                i++;
+            } else if ("-poolDepths".equals(args[i])) {
+                poolDepths = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+                i++;
+            } else if ("-power".equals(args[i])) {
+                power = args[i + 1];
+                i++;
+            } else if ("-trials".equals(args[i])) {
+                trials = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if ("-alpha".equals(args[i])) {
+                alpha = Double.parseDouble(args[i + 1]);
+                i++;
+            } else if ("-samples".equals(args[i])) {
+                samples = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if ("-seed".equals(args[i])) {
+                seed = Long.parseLong(args[i + 1]);
+                i++;
+            } else if ("-cutoffs".equals(args[i])) {
+                cutoffs = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
                 i++;
+            } else if ("-ndcg".equals(args[i])) {
+                ndcg = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if ("-err".equals(args[i])) {
+                err = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if ("-condensed".equals(args[i])) {
+                condensed = true;
+            } else if ("-rbp".equals(args[i])) {
+                rbp = Double.parseDouble(args[i + 1]);
+                i++;
+            } else if ("-server".equals(args[i])) {
+                serverPort = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if ("-cacheMemory".equals(args[i])) {
+                cacheMemory = Long.parseLong(args[i + 1]);
+                i++;
+            } else if ("-profile".equals(args[i])) {
+                profile = true;
+            } else if ("-profileJson".equals(args[i])) {
+                profile = true;
+                profileJson = args[i + 1];
+                i++;
+            } else if ("-compile".equals(args[i])) {
+                compile = true;
             } else if ("-output".equals(args[i])) {
                 outputPath = args[i + 1];
                 i++;
+            } else if ("-batch".equals(args[i])) {
+                batch = args[i + 1];
+                i++;
+            } else if ("-fuse".equals(args[i])) {
+                fuse = args[i + 1];
+                i++;
+            } else if ("-fusion".equals(args[i])) {
+                fusion = args[i + 1];
+                i++;
+            } else if ("-rrfK".equals(args[i])) {
+                rrfK = Arrays.stream(args[i + 1].split(",")).mapToDouble(Double::parseDouble).toArray();
+                i++;
+            } else if ("-fusionDepth".equals(args[i])) {
+                fusionDepths = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+                i++;
+            } else if ("-stream".equals(args[i])) {
+                stream = true;
+            } else if ("-ci".equals(args[i])) {
+                resamples = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if ("-confidence".equals(args[i])) {
+                confidence = Double.parseDouble(args[i + 1]);
+                i++;
+            } else if ("-format".equals(args[i])) {
+                format = args[i + 1];
+                i++;
+            } else if ("-incremental".equals(args[i])) {
+                incremental = true;
+            } else if ("-threads".equals(args[i])) {
+                threads = Integer.parseInt(args[i + 1]);
+                i++;
             }
         }
 
-        Judgements judgements = new Judgements(relevancePath);
-        RecoveredDocuments documents = new RecoveredDocuments(recoverSistemResultPath);
-        Metrics metrics = new Metrics();
-
-        metrics.setPrecision(caluclatePrecision(judgements, documents));
-        metrics.setRecall(caluclateRecall(judgements, documents));
-        metrics.setPrecToK(calculatePrecisionToK(10, documents, judgements));
-        metrics.setMAP (calculateMAP(45, documents, judgements));
-        metrics.setF1Score (calculateF1Score(documents, metrics));
-
+        if (profile)
+            Profiler.enable();
+        try {
+            if (compile) {
+                if ((compileQrels == null) == (compileResults == null))
+                    throw new IllegalArgumentException("-compile needs either -qrels or -results, but not both");
+                if (compileQrels != null)
+                    CompiledFiles.compileJudgements(compileQrels, outputPath);
+                else
+                    CompiledFiles.compileRecoveredDocuments(compileResults, outputPath);
+                return;
+            }
 
-        for(String infoNeed : documents.getInfoNeeds()) {
-            for (Map.Entry<Float,Float> value : calculateRecallPrecision(documents, judgements, infoNeed).entrySet())
-                metrics.addRecallPrecisionLine(infoNeed, value.getKey(), value.getValue());
-            for (Map.Entry<Float,Float> value : calculateInterpolatedPrecision(documents, judgements, infoNeed).entrySet()) {
-                metrics.addRInterpolatedPrecisionLine(infoNeed, value.getKey(), value.getValue());
+            MetricEngine engine = new MetricEngine(10, 45);
+            engine.setCutoffs(cutoffs);
+            engine.setCondensedMeasures(condensed);
+            // Graded measures, computed in the same walk of the ranking as the others
+            // NDCG@k is already reported with the measures of the cutoffs when k is one of them
+            int ndcgCutoff = ndcg;
+            if (ndcg > 0 && Arrays.stream(engine.getCutoffs()).noneMatch(k -> k == ndcgCutoff)) {
+                engine.addAccumulator(() -> new NdcgAccumulator(ndcgCutoff));
+            }
+            if (err > 0) {
+                int k = err;
+                engine.addAccumulator(() -> new ErrAccumulator(k));
+            }
+            if (rbp > 0) {
+                double p = rbp;
+                engine.addAccumulator(() -> new RbpAccumulator(p));
+            }
+            if (serverPort >= 0) {
+                EvaluationServer server = new EvaluationServer(engine, new JudgementsCache(cacheMemory << 20), threads);
+                server.start(serverPort);
+                System.out.println("Listening on http://localhost:" + server.getPort() + "/");
+                return;
+            }
+            Judgements judgements = new Judgements(relevancePath);
+            if (compare != null) {
+                List<File> runs = listRuns(compare);
+                String[] names = new String[runs.size()];
+                for (int i = 0; i < names.length; i++)
+                    names[i] = runs.get(i).getName();
+                Comparison comparison = new Comparison(names, evaluateRuns(engine, judgements, runs, threads));
+                try (BufferedWriter out = new BufferedWriter(new PrintWriter(outputPath))) {
+                    out.write(comparison.printComparison(iterations, seed, threads));
+                }
+                return;
+            }
+            if (power != null) {
+                List<File> runs = listRuns(power);
+                String[] names = new String[runs.size()];
+                for (int i = 0; i < names.length; i++)
+                    names[i] = runs.get(i).getName();
+                PowerAnalysis analysis = new PowerAnalysis(names, evaluateRuns(engine, judgements, runs, threads));
+                try (BufferedWriter out = new BufferedWriter(new PrintWriter(outputPath))) {
+                    out.write(analysis.printPower(iterations, trials, alpha, seed, threads));
+                }
+                return;
+            }
+            if (simulate != null) {
+                List<File> runs = listRuns(simulate);
+                RecoveredDocuments[] documents = new RecoveredDocuments[runs.size()];
+                Parallel.forEach(documents.length, threads, i -> documents[i] = new RecoveredDocuments(
+                        runs.get(i).getPath(), new IdDictionary(judgements.getDocuments())));
+                Simulation simulation = new Simulation(engine, judgements, documents);
+                try (BufferedWriter out = new BufferedWriter(new PrintWriter(outputPath))) {
+                    out.write(simulation.printSimulation(sampleRates, poolDepths, samples, seed, threads));
+                }
+                return;
+            }
+            if (fuse != null) {
+                List<RunFusion.Method> methods = new ArrayList<>();
+                for (String method : fusion.split(","))
+                    methods.add(RunFusion.Method.parse(method));
+                evaluateFusion(engine, judgements, listRuns(fuse), outputPath, threads, format, methods, rrfK,
+                        fusionDepths);
+                return;
+            }
+            if (batch != null) {
+                evaluateBatch(engine, judgements, listRuns(batch), outputPath, threads, format);
+                return;
+            }
+            if (stream) {
+                evaluateStream(engine, judgements, recoverSistemResultPath, outputPath, format);
+                return;
+            }
+            RecoveredDocuments documents = new RecoveredDocuments(recoverSistemResultPath,
+                    new IdDictionary(judgements.getDocuments()));
+            warnDuplicates(recoverSistemResultPath, documents.getNumDuplicates());
+            // Every information need is written as soon as it and the ones before it are evaluated
+            try (MetricsWriter out = MetricsWriter.create(format, new BufferedWriter(new FileWriter(outputPath)))) {
+                Metrics metrics = new Metrics(documents.getInfoNeeds().size());
+                if (incremental) {
+                    // The measures of the previous evaluation are kept next to the output
+                    File cacheFile = new File(outputPath + ".cache");
+                    TopicMeasures[] results = evaluateInfoNeeds(engine, judgements, documents, threads,
+                            MeasuresCache.load(cacheFile, engine.getConfigurationKey()), metrics, out);
+                    MeasuresCache.save(cacheFile, engine.getConfigurationKey(), results);
+                } else {
+                    evaluateInfoNeeds(engine, judgements, documents, threads, null, metrics, out);
+                }
+                writeTotal(out, metrics, threads);
+            }
+        } finally {
+            if (profile) {
+                System.out.print(Profiler.printSummary());
+                if (profileJson != null)
+                    Profiler.writeJson(profileJson);
             }
         }
-
-        BufferedWriter out = new BufferedWriter(new PrintWriter(outputPath));
-
-        out.write(metrics.printMetrics());
-
-        out.close();
     }
 
     /**
-     * Calculate the interpolated precision of a set of documents.
-     * @param documents Collection of document which you need to calculate the information need.
-     * @param judgements Judgements of the retrieval information system.
-     * @param infoNeed infoneed to calculate the interpolated precision.
-     * @return A map with the percent of recall and interpolated precision of that recall.
+     * Writes the averages of the metrics and, if they are requested, their bootstrap confidence intervals.
+     * @param out Writer of the metrics.
+     * @param metrics Metrics of every information need.
+     * @param threads Number of threads used to compute the intervals, 0 to use every core.
+     * @throws IOException If the output can not be written.
      */
-    private Map<Float, Float> calculateInterpolatedPrecision(RecoveredDocuments documents,
-                                                 Judgements judgements, String infoNeed) {
-        float currentPrecision;
-        float currentRecall;
-        Map<Float, Float> retval = new HashMap<>();
-
-        for(float targetRecall : Metrics.recalls) {
-            int numRelevants = 0;
-            int cont = 1;
-            float maxPrecision = 0;
-            float totalNumRelevants = judgements.getNumRelevantJudgementsByInfoNeed(infoNeed);
-
-            for (Map.Entry<String, RecoveredDocument> doc : documents.getDocumentsByInfoNeed(infoNeed).entrySet()) {
-                if (judgements.isRelevant(doc.getValue())) {
-                    numRelevants ++;
-                }
-                currentRecall = (float) numRelevants / totalNumRelevants;
-                currentPrecision = (float) numRelevants / cont;
-                if (currentRecall >= targetRecall && currentPrecision > maxPrecision) {
-                    maxPrecision = currentPrecision;
-                }
-                cont++;
-
-            }
-            retval.put(targetRecall,maxPrecision);
+    private void writeTotal(MetricsWriter out, Metrics metrics, int threads) throws IOException {
+        out.writeTotal(metrics);
+        if (resamples > 0) {
+            Profiler.Timer timer = Profiler.start("confidence intervals");
+            int lower = metrics.computeConfidenceIntervals(new ConfidenceIntervals(threads), resamples, confidence,
+                    seed);
+            timer.stop(resamples);
+            out.writeConfidenceIntervals(metrics, lower, confidence, resamples);
         }
-        return retval;
     }
 
     /**
-     * Calculate the recall precision of a set of documents.
-     * @param documents Collection of recovered documents to calculate the recall-precision metrics.
+     * Evaluate a file of recovered documents one information need at a time.
+     * Every information need is written as soon as its documents have been read and then its documents are discarded,
+     * so the memory used depends on the biggest information need instead of the whole file.
+     * @param engine Metric engine used to evaluate every information need.
      * @param judgements Judgements of the retrieval information system.
-     * @param infoNeed infoneed to calculate the recall-precision.
-     * @return Return a map with the percent of recall and the associated precision of that recall.
+     * @param recoverSistemResultPath File of recovered documents grouped by information need.
+     * @param outputPath File where the metrics are written.
+     * @param format Format of the output, one of {@link MetricsWriter#FORMATS}.
+     * @throws IOException If a file can not be read or written, or the documents are not grouped by information need.
+     *                     Then the output file is left as it was.
      */
-    private Map<Float, Float> calculateRecallPrecision(RecoveredDocuments documents,
-                                                       Judgements judgements, String infoNeed) {
-        float precision;
-        float currentRecall;
-        Map<Float, Float> retval = new LinkedHashMap<>();
-
-
-        float totalNumRelevants = judgements.getNumRelevantJudgementsByInfoNeed(infoNeed);
-        for(float r: Metrics.recallsRP) {
-            int numRelevants = 0;
-            int cont = 1;
-            precision = 0;
-            for (Map.Entry<String, RecoveredDocument> doc : documents.getDocumentsByInfoNeed(infoNeed).entrySet()) {
-                if (judgements.isRelevant(doc.getValue())) {
-                    numRelevants++;
-                }
-                currentRecall = (float) numRelevants / totalNumRelevants;
-                if (currentRecall >=  r){
-                    precision = (float) numRelevants / cont;
-                    break;
-                }
-
-                cont++;
+    private void evaluateStream(MetricEngine engine, Judgements judgements, String recoverSistemResultPath,
+                                String outputPath, String format) throws IOException {
+        Metrics metrics = new Metrics();
+        // The grouping is only known at the end of the file, the output is written apart until then
+        Path target = Paths.get(outputPath).toAbsolutePath();
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (RecoveredDocumentsStream documents = new RecoveredDocumentsStream(recoverSistemResultPath,
+                judgements.getDocuments());
+             MetricsWriter out = MetricsWriter.create(format, new BufferedWriter(new FileWriter(temporary.toFile())))) {
+            int[] ranking;
+            while ((ranking = documents.nextInfoNeed()) != null) {
+                String infoNeed = documents.getInfoNeed();
+                metrics.add(engine.evaluate(infoNeed, ranking, judgements.getJudgementsByInfoNeed(infoNeed)));
+                Profiler.Timer timer = Profiler.start("write output");
+                out.writeInfoNeed(metrics, infoNeed);
+                timer.stop(1);
             }
-            retval.put(r, precision);
-
+            writeTotal(out, metrics, 1);
+            warnDuplicates(recoverSistemResultPath, documents.getNumDuplicates());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
         }
-
-
-        return retval;
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
     }
 
-
     /**
-     * Calculate the precision of the first k recovered documents.
-     * @param k Number of the recovered top docs.
-     * @param documents Collection of documents to evaluate.
-     * @param judgements Judgements of the information retrieval system.
-     * @return Return a map with the information need and the precision of the k first documents.
+     * Reports the documents which appear more than once in the same information need of a file.
+     * @param path Path of the file of recovered documents.
+     * @param duplicates Number of repeated appearances which were ignored.
      */
-    private  Map<String, Float> calculatePrecisionToK(int k, RecoveredDocuments documents, Judgements judgements) {
-        Map<String, Float> retval = new HashMap<>();
-        int cont;
-        int numRelevants;
-        for(String infoNeed : documents.getInfoNeeds()) {                                   //Every infoneed
-            cont = 1;
-            numRelevants = 0;
-            for (Map.Entry<String, RecoveredDocument> me : documents.getDocumentsByInfoNeed(infoNeed).entrySet()) {    //Every document per infoneed
-                RecoveredDocument rd = me.getValue();
-                if(judgements.isRelevant(rd))
-                    numRelevants ++;
-                if (cont == k)
-                    break;
-
-                cont++;
-            }
-            retval.put(infoNeed, (float)numRelevants/k);
+    private static void warnDuplicates(String path, int duplicates) {
+        if (duplicates > 0) {
+            System.err.println(path + ": " + duplicates + " repeated documents ignored, every document is evaluated"
+                    + " in its first position");
         }
-        return retval;
     }
 
+    /**
+     * Evaluate every information need of a set of recovered documents.
+     * The ranking of every information need is walked only once. When more than one thread is used the information
+     * needs are evaluated concurrently and the results are merged in the order of the information needs, so the
+     * output does not depend on the number of threads.
+     * @param engine Metric engine used to evaluate every information need.
+     * @param judgements Judgements of the retrieval information system.
+     * @param documents Collection of recovered documents to evaluate.
+     * @param threads Number of threads used to evaluate the information needs, 0 to use every core.
+     * @return The metrics of every information need.
+     */
+    private Metrics evaluate(MetricEngine engine, Judgements judgements, RecoveredDocuments documents, int threads) {
+        Metrics metrics = new Metrics(documents.getInfoNeeds().size());
+        try {
+            evaluateInfoNeeds(engine, judgements, documents, threads, null, metrics, null);
+        } catch (IOException e) {
+            // Nothing is written without a writer
+            throw new UncheckedIOException(e);
+        }
+        return metrics;
+    }
 
     /**
-     * Calculate the MAP measure of a set of documents in every information need.
-     * @param k Number of the k top recovered documents.
-     * @param documents Collection of documents to evaluate.
-     * @param judgements Judgements of the information retrieval system.
-     * @return Return a map with the information need and his MAP value associated.
+     * Evaluate every information need of a set of recovered documents, reusing the measures of a previous evaluation
+     * of the information needs whose documents and judgements have not changed.
+     * @param engine Metric engine used to evaluate every information need.
+     * @param judgements Judgements of the retrieval information system.
+     * @param documents Collection of recovered documents to evaluate.
+     * @param threads Number of threads used to evaluate the information needs, 0 to use every core.
+     * @param cache Measures of a previous evaluation, or null to evaluate every information need.
+     * @param metrics Metrics where the measures are added, in the order of the information needs.
+     * @param out Writer of every information need as soon as it is added to the metrics, or null.
+     * @return The measures of every information need, in the order of the information needs.
+     * @throws IOException If the output can not be written.
      */
-    private  Map<String, Float> calculateMAP(int k, RecoveredDocuments documents, Judgements judgements) {
-        Map<String, Float> retval = new HashMap<>();
-        int cont;
-        int numRelevants;
-        float total;
-        for(String infoNeed : documents.getInfoNeeds()) {
-            cont = 1;
-            numRelevants = 0;
-            total = 0;
-            for (Map.Entry<String ,RecoveredDocument> me : documents.getDocumentsByInfoNeed(infoNeed).entrySet()) {
-                RecoveredDocument rd = me.getValue();
-                if(judgements.isRelevant(rd)){
-                    numRelevants ++;
-                    total+= (((float) numRelevants)/cont);
+    private TopicMeasures[] evaluateInfoNeeds(MetricEngine engine, Judgements judgements, RecoveredDocuments documents,
+                                              int threads, MeasuresCache cache, Metrics metrics, MetricsWriter out)
+            throws IOException {
+        List<String> infoNeeds = new ArrayList<>(documents.getInfoNeeds());
+        TopicMeasures[] results = new TopicMeasures[infoNeeds.size()];
+        int[] next = {0};
+        IntConsumer evaluateInfoNeed = i -> {
+            String infoNeed = infoNeeds.get(i);
+            results[i] = engine.evaluate(infoNeed, documents.getDocumentsByInfoNeed(infoNeed),
+                    judgements.getJudgementsByInfoNeed(infoNeed), cache);
+            // The thread which completes the information needs in order adds and writes them
+            synchronized (next) {
+                for (; next[0] < results.length && results[next[0]] != null; next[0]++) {
+                    metrics.add(results[next[0]]);
+                    if (out != null) {
+                        Profiler.Timer timer = Profiler.start("write output");
+                        try {
+                            out.writeInfoNeed(metrics, infoNeeds.get(next[0]));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        timer.stop(1);
+                    }
                 }
-
-                if (cont == k) break;
-                cont++;
-
             }
-            retval.put(infoNeed, total/numRelevants);
+        };
+
+        // With several threads the allocations of the workers are only seen in the phases of the engine
+        Profiler.Timer timer = Profiler.start("evaluate");
+        try {
+            Parallel.forEach(results.length, threads, evaluateInfoNeed);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        return retval;
+        timer.stop(results.length);
+        return results;
     }
 
     /**
-     * Calculates the F1 score metric of a set of recovered documents of every information need.
-     * @param documents Collection of documents to evaluate.
-     * @param metrics Contains the precision and recall metrics of the system.
-     * @return Return the F1 Score of a set of recovered documents.
+     * Evaluate several files of recovered documents against the same judgements, which are loaded only once.
+     * The files are evaluated concurrently, every one is written in its own file of the output directory and the
+     * averages of all of them are written in a comparison table.
+     * @param engine Metric engine used to evaluate every information need.
+     * @param judgements Judgements of the retrieval information system, shared by every file.
+     * @param runs Files of recovered documents.
+     * @param outputDirectory Directory where the metrics of every file and the comparison table are written.
+     * @param threads Number of files evaluated at the same time, 0 to use every core.
+     * @param format Format of the file of every run, one of {@link MetricsWriter#FORMATS}.
+     * @throws IOException If the output can not be written.
      */
-    private Map<String, Float>  calculateF1Score(RecoveredDocuments documents, Metrics metrics) {
-        HashMap<String, Float> retval = new HashMap<>();
-        for(String infoNeed: documents.getInfoNeeds()) {
-            float precision = metrics.getPrecision(infoNeed);
-            float recall = metrics.getRecall(infoNeed);
-            retval.put(infoNeed, (2 * precision * recall) / (precision + recall));
+    private void evaluateBatch(MetricEngine engine, Judgements judgements, List<File> runs, String outputDirectory,
+                               int threads, String format) throws IOException {
+        File directory = new File(outputDirectory);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can not create the output directory " + outputDirectory);
+        }
+        Metrics[] results = evaluateRuns(engine, judgements, runs, threads);
+        Profiler.Timer timer = Profiler.start("write output");
+        for (int i = 0; i < results.length; i++) {
+            File output = new File(directory, runs.get(i).getName() + ".eval");
+            try (MetricsWriter out = MetricsWriter.create(format, new BufferedWriter(new FileWriter(output)))) {
+                for (String infoNeed : results[i].getInfoNeeds())
+                    out.writeInfoNeed(results[i], infoNeed);
+                writeTotal(out, results[i], threads);
+            }
+        }
+
+        try (BufferedWriter out = new BufferedWriter(new PrintWriter(new File(directory, "comparison.txt")))) {
+            out.write(Metrics.printSummaryHeader());
+            for (int i = 0; i < results.length; i++)
+                out.write(results[i].printSummary(runs.get(i).getName()));
         }
-            return retval;
+        timer.stop(results.length);
     }
 
     /**
-     * Calculate the recall of a set of recovered document in all information need queries
-     * @param judgements Judgements of the retrieval information System.
-     * @param documents Documents recovered in a information need query
-     * @return Returns a map with the information need an his associated recall
+     * Fuses several files of recovered documents in memory and evaluates the fused run of every configuration of a
+     * grid of fusion methods and parameters. The files are loaded only once for the whole grid.
+     * Every fused run is written in its own file of the output directory, named after its configuration, and the
+     * averages of all of them are written in a comparison table.
+     * @param engine Metric engine used to evaluate every information need.
+     * @param judgements Judgements of the retrieval information system, shared by every fused run.
+     * @param runs Files of recovered documents to fuse.
+     * @param outputDirectory Directory where the metrics of every fused run and the comparison table are written.
+     * @param threads Number of threads used to fuse and evaluate the information needs, 0 to use every core.
+     * @param format Format of the file of every fused run, one of {@link MetricsWriter#FORMATS}.
+     * @param methods Fusion methods of the grid.
+     * @param rrfK Values of the constant of reciprocal rank fusion in the grid.
+     * @param depths Number of documents taken from every run in the grid, 0 to take all of them.
+     * @throws IOException If the output can not be written.
      */
-    private  HashMap<String, Float> caluclateRecall(Judgements judgements, RecoveredDocuments documents) {
-        HashMap<String, Float> retval = new HashMap<>();
-        for(String infoNeed: documents.getInfoNeeds()) {
-            LinkedHashMap<String, RecoveredDocument> infoNeedDocuments = (LinkedHashMap<String, RecoveredDocument>) documents.getDocumentsByInfoNeed(infoNeed);
-
-            int numRelevantRecoveredDocuments = judgements.getRelevanceOfDocumentSet(infoNeedDocuments);
-
-            retval.put(infoNeed,(float) numRelevantRecoveredDocuments / judgements.getNumRelevantJudgementsByInfoNeed( infoNeed));
+    private void evaluateFusion(MetricEngine engine, Judgements judgements, List<File> runs, String outputDirectory,
+                                int threads, String format, List<RunFusion.Method> methods, double[] rrfK,
+                                int[] depths) throws IOException {
+        File directory = new File(outputDirectory);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can not create the output directory " + outputDirectory);
+        }
+        List<String> paths = new ArrayList<>();
+        for (File run : runs)
+            paths.add(run.getPath());
+        RunFusion fusion = new RunFusion(paths, new IdDictionary(judgements.getDocuments()));
+        RecoveredDocuments[] loaded = fusion.getRuns();
+        for (int i = 0; i < loaded.length; i++)
+            warnDuplicates(paths.get(i), loaded[i].getNumDuplicates());
+
+        try (BufferedWriter summary = new BufferedWriter(new PrintWriter(new File(directory, "comparison.txt")))) {
+            summary.write(Metrics.printSummaryHeader());
+            for (RunFusion.Method method : methods) {
+                double[] parameters = method == RunFusion.Method.RRF ? rrfK : new double[] {0};
+                for (double k : parameters) {
+                    for (int depth : depths) {
+                        String name = method.name().toLowerCase(Locale.ROOT)
+                                + (method == RunFusion.Method.RRF ? "-k" + formatParameter(k) : "")
+                                + (depth > 0 ? "-depth" + depth : "");
+                        Metrics metrics = evaluate(engine, judgements, fusion.fuse(method, k, depth, threads), threads);
+                        Profiler.Timer timer = Profiler.start("write output");
+                        File output = new File(directory, name + ".eval");
+                        try (MetricsWriter out = MetricsWriter.create(format,
+                                new BufferedWriter(new FileWriter(output)))) {
+                            for (String infoNeed : metrics.getInfoNeeds())
+                                out.writeInfoNeed(metrics, infoNeed);
+                            writeTotal(out, metrics, threads);
+                        }
+                        summary.write(metrics.printSummary(name));
+                        timer.stop(1);
+                    }
+                }
+            }
         }
-        return retval;
     }
 
+    /**
+     * @param value Parameter of a fusion method.
+     * @return The parameter without decimals if it is an integer.
+     */
+    private static String formatParameter(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
 
     /**
-     * Calculate the precision of a set of recovered document in all information need queries
-     * @param judgements Judgements of the retrieval information System.
-     * @param documents Documents recovered in a information need query
-     * @return Returns a map with the information need an his associated recall
+     * Evaluate several files of recovered documents concurrently against the same judgements.
+     * @param engine Metric engine used to evaluate every information need.
+     * @param judgements Judgements of the retrieval information system, shared by every file.
+     * @param runs Files of recovered documents.
+     * @param threads Number of files evaluated at the same time, 0 to use every core.
+     * @return The metrics of every file, in the same order.
      */
-    private HashMap<String, Float> caluclatePrecision(Judgements judgements, RecoveredDocuments documents) {
-        HashMap<String, Float> retval = new HashMap<>();
-        for(String infoNeed: documents.getInfoNeeds()) {
-            LinkedHashMap<String, RecoveredDocument> infoNeedDocuments = (LinkedHashMap<String, RecoveredDocument>) documents.getDocumentsByInfoNeed(infoNeed);
+    private Metrics[] evaluateRuns(MetricEngine engine, Judgements judgements, List<File> runs, int threads) {
+        Metrics[] results = new Metrics[runs.size()];
+        Parallel.forEach(results.length, threads, i -> {
+            RecoveredDocuments documents = new RecoveredDocuments(runs.get(i).getPath(),
+                    new IdDictionary(judgements.getDocuments()));
+            warnDuplicates(runs.get(i).getPath(), documents.getNumDuplicates());
+            results[i] = evaluate(engine, judgements, documents, 1);
+        });
+        return results;
+    }
 
-            int numRelevantRecoveredDocuments = judgements.getRelevanceOfDocumentSet(infoNeedDocuments);
-            retval.put(infoNeed,(float) numRelevantRecoveredDocuments / infoNeedDocuments.size());
+    /**
+     * Get the files of recovered documents of a batch.
+     * @param batch Comma separated list of files or directories, every file of a directory is included.
+     * @return The files in the order of the list, the files of a directory sorted by name.
+     */
+    private static List<File> listRuns(String batch) {
+        List<File> retval = new ArrayList<>();
+        for (String path : batch.split(",")) {
+            File file = new File(path);
+            File[] files = file.listFiles(File::isFile);
+            if (files != null) {
+                Arrays.sort(files);
+                retval.addAll(Arrays.asList(files));
+            } else {
+                retval.add(file);
+            }
         }
         return retval;
     }
 
-
-    public static void main (String[] args) throws IOException {
-        new Evaluation(args);
+    /**
+     * Runs the evaluation. A file which can not be read or has a malformed line stops the evaluation with exit code 1,
+     * so nothing is evaluated with part of a file.
+     */
+    public static void main (String[] args) {
+        try {
+            new Evaluation(args);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println(e instanceof UncheckedIOException ? e.getCause().getMessage() : e.getMessage());
+            System.exit(1);
+        }
     }
 
 
@@ -0,0 +1,175 @@
+import com.recinfo.collection.IdDictionary;
+import com.recinfo.collection.Judgements;
+import com.recinfo.collection.JudgementsCache;
+import com.recinfo.collection.RecoveredDocuments;
+import com.recinfo.concurrent.Parallel;
+import com.recinfo.metrics.MetricEngine;
+import com.recinfo.metrics.TopicMeasures;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Evaluation server which keeps the JVM and the loaded judgements between evaluations.
+ * It listens on the loopback interface and answers:
+ * <ul>
+ *     <li>{@code /evaluate?qrels=<path>&run=<path>}: evaluates a file of recovered documents. Without {@code run}
+ *     the body of the request is the content of the recovered documents file.</li>
+ *     <li>{@code /stats}: number of judgements files in the cache and their memory.</li>
+ * </ul>
+ * The metrics are returned as JSON. Every request is served in its own thread, the judgements are shared
+ * between the requests through a {@link JudgementsCache}.
+ */
+public class EvaluationServer {
+    private final MetricEngine engine;
+    private final JudgementsCache judgements;
+    private final int threads;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param engine Metric engine used in every evaluation.
+     * @param judgements Cache of the judgements files.
+     * @param threads Number of threads used to evaluate the information needs of a request, 0 to use every core.
+     */
+    public EvaluationServer(MetricEngine engine, JudgementsCache judgements, int threads) {
+        this.engine = engine;
+        this.judgements = judgements;
+        this.threads = threads;
+    }
+
+    /**
+     * Starts listening, the requests are served in other threads.
+     * @param port Port of the loopback interface, 0 to use any free port.
+     * @throws IOException If the port can not be used.
+     */
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/evaluate", exchange -> handle(exchange, this::evaluate));
+        server.createContext("/stats", exchange -> handle(exchange, this::stats));
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return The port where the server listens.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops listening and waits for the requests being served.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private interface Handler {
+        String handle(Map<String, String> parameters, HttpExchange exchange) throws IOException;
+    }
+
+    /**
+     * Answers a request with the JSON of the handler, or with an error if it fails: 400 if a parameter, the qrels or
+     * the run are wrong, 500 for any other failure, so a request is always answered.
+     */
+    private static void handle(HttpExchange exchange, Handler handler) throws IOException {
+        int status = 200;
+        String response;
+        try {
+            response = handler.handle(parameters(exchange.getRequestURI().getRawQuery()), exchange);
+        } catch (IllegalArgumentException | IOException e) {
+            status = 400;
+            response = error(e.getMessage());
+        } catch (UncheckedIOException e) {
+            status = 400;
+            response = error(e.getCause().getMessage());
+        } catch (RuntimeException e) {
+            // A bug, not a wrong request, so it is also reported in the server
+            e.printStackTrace();
+            status = 500;
+            response = error(e.toString());
+        }
+        byte[] body = response.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * @param message Message of the error.
+     * @return The JSON of an error.
+     */
+    private static String error(String message) {
+        return "{\"error\": \"" + String.valueOf(message).replace("\\", "\\\\").replace("\"", "\\\"")
+                + "\"}\n";
+    }
+
+    private String evaluate(Map<String, String> parameters, HttpExchange exchange) throws IOException {
+        String qrels = parameters.get("qrels");
+        if (qrels == null) {
+            throw new IllegalArgumentException("the qrels parameter is required");
+        }
+        Judgements judgements = this.judgements.get(qrels);
+        IdDictionary documents = new IdDictionary(judgements.getDocuments());
+        RecoveredDocuments run;
+        if (parameters.containsKey("run")) {
+            if (!new File(parameters.get("run")).isFile()) {
+                throw new IOException(parameters.get("run") + " does not exist");
+            }
+            run = new RecoveredDocuments(parameters.get("run"), documents);
+        } else {
+            try (InputStream in = exchange.getRequestBody()) {
+                run = new RecoveredDocuments("request", in.readAllBytes(), documents);
+            }
+        }
+
+        List<String> infoNeeds = new ArrayList<>(run.getInfoNeeds());
+        TopicMeasures[] results = new TopicMeasures[infoNeeds.size()];
+        Parallel.forEach(results.length, threads, i -> results[i] = engine.evaluate(infoNeeds.get(i),
+                run.getDocumentsByInfoNeed(infoNeeds.get(i)), judgements.getJudgementsByInfoNeed(infoNeeds.get(i))));
+        Metrics metrics = new Metrics(results.length);
+        for (TopicMeasures measures : results)
+            metrics.add(measures);
+        return metrics.printJson();
+    }
+
+    private String stats(Map<String, String> parameters, HttpExchange exchange) {
+        return "{\"cachedQrels\": " + judgements.size() + ", \"cacheMemory\": " + judgements.getMemory() + "}\n";
+    }
+
+    /**
+     * @param query Raw query of the request.
+     * @return The decoded parameters of the query.
+     */
+    private static Map<String, String> parameters(String query) {
+        Map<String, String> retval = new HashMap<>();
+        if (query == null) {
+            return retval;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0) {
+                retval.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return retval;
+    }
+}
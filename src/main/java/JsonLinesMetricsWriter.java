@@ -0,0 +1,102 @@
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the measures as JSON Lines: an object per information need and a last object with the averages, which has
+ * "total" instead of "infoNeed". Values which are not a number are written as null.
+ */
+public class JsonLinesMetricsWriter extends MetricsWriter {
+
+    public JsonLinesMetricsWriter(Writer out) {
+        super(out);
+    }
+
+    @Override
+    public void writeInfoNeed(Metrics metrics, String infoNeed) throws IOException {
+        line.append("{\"infoNeed\": ");
+        appendString(line, infoNeed);
+        write(metrics, metrics.getIndex(infoNeed));
+    }
+
+    @Override
+    public void writeTotal(Metrics metrics) throws IOException {
+        line.append("{\"total\": true, \"infoNeeds\": ").append(metrics.getInfoNeeds().size());
+        write(metrics, metrics.computeTotal());
+    }
+
+    /**
+     * The bounds are written as two objects with "bound" instead of "infoNeed".
+     */
+    @Override
+    public void writeConfidenceIntervals(Metrics metrics, int lower, double confidence, int resamples)
+            throws IOException {
+        line.append("{\"bound\": \"lower\", \"confidence\": ").append(confidence).append(", \"resamples\": ")
+                .append(resamples);
+        write(metrics, lower);
+        line.append("{\"bound\": \"upper\", \"confidence\": ").append(confidence).append(", \"resamples\": ")
+                .append(resamples);
+        write(metrics, lower + 1);
+    }
+
+    private void write(Metrics metrics, int i) throws IOException {
+        appendMember(line, "precision", metrics.getPrecision(i));
+        appendMember(line, "recall", metrics.getRecall(i));
+        appendMember(line, "f1Score", metrics.getF1Score(i));
+        appendMember(line, "precToK", metrics.getPrecToK(i));
+        appendMember(line, "averagePrecision", metrics.getAveragePrecision(i));
+        for (int a = 0; a < metrics.getAccumulatedCount(); a++)
+            appendMember(line, metrics.getAccumulatedName(a), metrics.getAccumulated(i, a));
+        line.append(", \"recallPrecision\": [");
+        for (int r = 0; r < Metrics.recallsRP.length; r++) {
+            if (r > 0)
+                line.append(", ");
+            appendNumber(line, metrics.getRecallPrecision(i, r));
+        }
+        line.append("], \"interpolatedPrecision\": [");
+        for (int r = 0; r < Metrics.recalls.length; r++) {
+            if (r > 0)
+                line.append(", ");
+            appendNumber(line, metrics.getInterpolatedPrecision(i, r));
+        }
+        line.append("]}\n");
+        flushLine();
+    }
+
+    /**
+     * Appends a member of a JSON object after other members.
+     */
+    static void appendMember(StringBuilder out, String name, float value) {
+        out.append(", ");
+        appendString(out, name);
+        out.append(": ");
+        appendNumber(out, value);
+    }
+
+    /**
+     * Appends a number, NaN and infinite values are written as null.
+     */
+    static void appendNumber(StringBuilder out, float value) {
+        if (Float.isNaN(value) || Float.isInfinite(value))
+            out.append("null");
+        else
+            out.append(value);
+    }
+
+    /**
+     * Appends a JSON string with its quotes.
+     */
+    static void appendString(StringBuilder out, String s) {
+        out.append('"');
+        for (int c = 0; c < s.length(); c++) {
+            char ch = s.charAt(c);
+            if (ch == '"' || ch == '\\') {
+                out.append('\\').append(ch);
+            } else if (ch < 0x20) {
+                out.append(String.format("\\u%04x", (int) ch));
+            } else {
+                out.append(ch);
+            }
+        }
+        out.append('"');
+    }
+}
@@ -1,142 +1,331 @@
+import com.recinfo.metrics.MetricEngine;
+import com.recinfo.metrics.TopicMeasures;
+import com.recinfo.stats.ConfidenceIntervals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.*;
 
+/**
+ * Measures of every information need stored by columns.
+ * Every information need gets a dense index and every measure is an array indexed by it, the recall-precision curves
+ * are stored in a single array with a fixed number of levels per information need.
+ * The information needs are kept in the order they are added, which is the order they are written by a
+ * {@link MetricsWriter}.
+ */
 public class Metrics {
 
-    private Map<String, Float> precision;
-    private Map<String, Float> recall;
-    private Map<String, Float> precToK;
-    private Map<String, Float> map;
-    private Map<String, Matrix<Float,Float>> interpolatedPrecision;
-    private Map<String, Matrix<Float,Float>> recallPrecision;
-    private Map<String, Float> f1Score;
-    protected static final float[] recalls = {0, 0.1f, 0.2f, 0.3f, 0.4f, 0.5f, 0.6f, 0.7f, 0.8f, 0.9f, 1};
-    protected static final float[] recallsRP = {0.1f, 0.2f, 0.3f, 0.4f, 0.5f, 0.6f,0.7f, 0.8f, 0.9f};
+    private final Map<String, Integer> infoNeeds;
+    private String[] names;
+    private int size;
+    private float[] precision;
+    private float[] recall;
+    private float[] precToK;
+    private float[] map;
+    private float[] f1Score;
+    private float[] interpolatedPrecision;
+    private float[] recallPrecision;
+    private String[] accumulatedNames = new String[0];
+    private float[] accumulated = new float[0];
+    protected static final float[] recalls = MetricEngine.INTERPOLATED_RECALL_LEVELS;
+    protected static final float[] recallsRP = MetricEngine.RECALL_PRECISION_LEVELS;
 
     public Metrics() {
-        this.interpolatedPrecision = new HashMap<>();
-        this.recallPrecision = new HashMap<>();
+        this(16);
     }
 
-    public Map<String, Float> getF1Score() {
-        return f1Score;
+    /**
+     * @param expectedInfoNeeds Number of information needs expected, the columns grow if there are more.
+     */
+    public Metrics(int expectedInfoNeeds) {
+        // One more row for the averages
+        int capacity = Math.max(expectedInfoNeeds, 1) + 1;
+        this.infoNeeds = new LinkedHashMap<>();
+        this.names = new String[capacity];
+        this.precision = new float[capacity];
+        this.recall = new float[capacity];
+        this.precToK = new float[capacity];
+        this.map = new float[capacity];
+        this.f1Score = new float[capacity];
+        this.interpolatedPrecision = new float[capacity * recalls.length];
+        this.recallPrecision = new float[capacity * recallsRP.length];
     }
 
-    public void setF1Score(Map<String, Float> f1Score) {
-        this.f1Score = f1Score;
+    /**
+     * Adds every measure of an information need, replacing the previous ones if it was already added.
+     * @param measures Measures of the information need.
+     */
+    public void add(TopicMeasures measures) {
+        int i = indexOf(measures.getInfoNeed());
+        precision[i] = measures.getPrecision();
+        recall[i] = measures.getRecall();
+        f1Score[i] = measures.getF1Score();
+        precToK[i] = measures.getPrecToK();
+        map[i] = measures.getAveragePrecision();
+        for (int r = 0; r < recallsRP.length; r++)
+            recallPrecision[i * recallsRP.length + r] = measures.getRecallPrecision(r);
+        for (int r = 0; r < recalls.length; r++)
+            interpolatedPrecision[i * recalls.length + r] = measures.getInterpolatedPrecision(r);
+        if (accumulatedNames.length == 0 && !measures.getAccumulated().isEmpty()) {
+            accumulatedNames = measures.getAccumulated().keySet().toArray(new String[0]);
+            accumulated = new float[names.length * accumulatedNames.length];
+        }
+        for (int a = 0; a < accumulatedNames.length; a++)
+            accumulated[i * accumulatedNames.length + a] = measures.getAccumulated().get(accumulatedNames[a]);
     }
 
-    public Map<String, Float> getPrecision() {
-        return precision;
+    /**
+     * @param infoNeed Information need.
+     * @return The index of the information need in the columns, a new one if it was not added.
+     */
+    private int indexOf(String infoNeed) {
+        Integer i = infoNeeds.get(infoNeed);
+        if (i != null)
+            return i;
+        ensureCapacity(size + 1);
+        names[size] = infoNeed;
+        infoNeeds.put(infoNeed, size);
+        return size++;
     }
 
-    public void setPrecision(Map<String, Float> precision) {
-        this.precision = precision;
+    /**
+     * @param rows Number of rows needed in the columns.
+     */
+    private void ensureCapacity(int rows) {
+        if (rows > names.length) {
+            int capacity = Math.max(rows, names.length * 2);
+            names = Arrays.copyOf(names, capacity);
+            precision = Arrays.copyOf(precision, capacity);
+            recall = Arrays.copyOf(recall, capacity);
+            precToK = Arrays.copyOf(precToK, capacity);
+            map = Arrays.copyOf(map, capacity);
+            f1Score = Arrays.copyOf(f1Score, capacity);
+            interpolatedPrecision = Arrays.copyOf(interpolatedPrecision, capacity * recalls.length);
+            recallPrecision = Arrays.copyOf(recallPrecision, capacity * recallsRP.length);
+            accumulated = Arrays.copyOf(accumulated, capacity * accumulatedNames.length);
+        }
     }
 
-    public Map<String, Float> getRecall() {
-        return recall;
+    public String printMetrics(){
+        StringWriter retval = new StringWriter();
+        try (MetricsWriter out = new TextMetricsWriter(retval)) {
+            for (int i = 0; i < size; i++)
+                out.writeInfoNeed(this, names[i]);
+            out.writeTotal(this);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return retval.toString();
     }
 
-    public void setRecall(Map<String, Float> recall) {
-        this.recall = recall;
+    /**
+     * @return The measures of every information need and their averages as a JSON object.
+     */
+    public String printJson() {
+        StringBuilder retval = new StringBuilder();
+        retval.append("{\"infoNeeds\": [");
+        for (int i = 0; i < size; i++) {
+            retval.append(i == 0 ? "\n  {" : ",\n  {");
+            retval.append("\"infoNeed\": ");
+            JsonLinesMetricsWriter.appendString(retval, names[i]);
+            appendJson(retval, i, "averagePrecision");
+            retval.append('}');
+        }
+        int total = computeTotal();
+        retval.append("\n],\n\"total\": {\"infoNeeds\": ").append(size);
+        appendJson(retval, total, "map");
+        retval.append("}}\n");
+        return retval.toString();
     }
 
-    public Map<String, Float> getPrecToK() {
-        return precToK;
+    private void appendJson(StringBuilder out, int i, String averagePrecisionName) {
+        JsonLinesMetricsWriter.appendMember(out, "precision", precision[i]);
+        JsonLinesMetricsWriter.appendMember(out, "recall", recall[i]);
+        JsonLinesMetricsWriter.appendMember(out, "f1Score", f1Score[i]);
+        JsonLinesMetricsWriter.appendMember(out, "precToK", precToK[i]);
+        JsonLinesMetricsWriter.appendMember(out, averagePrecisionName, map[i]);
+        for (int a = 0; a < accumulatedNames.length; a++)
+            JsonLinesMetricsWriter.appendMember(out, accumulatedNames[a], accumulated[i * accumulatedNames.length + a]);
     }
 
-    public void setPrecToK(Map<String, Float> precToK) {
-        this.precToK = precToK;
+    /**
+     * @return The header of the comparison table of several evaluations.
+     */
+    public static String printSummaryHeader(){
+        return "RUN\tPRECISION\tRECALL\tF1 SCORE\tPREC@10\tMAP\n";
     }
 
-    public Map<String, Float> getMap() {
-        return map;
+    /**
+     * @param name Name of the evaluated system.
+     * @return The line of the comparison table with the averages of this evaluation.
+     */
+    public String printSummary(String name){
+        int total = computeTotal();
+        return name + "\t" + precision[total] + "\t" + recall[total] + "\t" + f1Score[total] + "\t" + precToK[total]
+                + "\t" + map[total] + "\n";
     }
 
-    public void setMAP(Map<String, Float> map) {
-        this.map = map;
+    /**
+     * Computes the average of every measure over the information needs, in the order they were added, and keeps it
+     * in the row after the last information need. The row is overwritten when an information need is added.
+     * @return The index of the row with the averages.
+     */
+    int computeTotal() {
+        ensureCapacity(size + 1);
+        int total = size;
+        precision[total] = calculateAverage(precision, 1, 0);
+        recall[total] = calculateAverage(recall, 1, 0);
+        f1Score[total] = calculateAverage(f1Score, 1, 0);
+        precToK[total] = calculateAverage(precToK, 1, 0);
+        map[total] = calculateAverage(map, 1, 0);
+        for (int r = 0; r < recallsRP.length; r++)
+            recallPrecision[total * recallsRP.length + r] = calculateAverage(recallPrecision, recallsRP.length, r);
+        for (int r = 0; r < recalls.length; r++)
+            interpolatedPrecision[total * recalls.length + r]
+                    = calculateAverage(interpolatedPrecision, recalls.length, r);
+        for (int a = 0; a < accumulatedNames.length; a++)
+            accumulated[total * accumulatedNames.length + a]
+                    = calculateAverage(accumulated, accumulatedNames.length, a);
+        return total;
     }
 
-    public void addRecallPrecisionLine(String infoNeed, float recall, float precision) {
-        if(recallPrecision.containsKey(infoNeed))
-            recallPrecision.get(infoNeed).addRow(recall, precision);
-        else {
-            Matrix<Float, Float> m = new Matrix<>();
-            m.addRow(recall, precision);
-            recallPrecision.put(infoNeed, m);
+    /**
+     * Computes bootstrap confidence intervals of the averages of {@link #computeTotal()}, resampling the information
+     * needs. The lower bounds are kept in the row after the averages and the upper bounds in the next one, the rows
+     * are overwritten when an information need is added.
+     * @param intervals Bootstrap of the intervals.
+     * @param resamples Number of bootstrap resamples.
+     * @param confidence Confidence level, between 0 and 1.
+     * @param seed Seed of the random generator.
+     * @return The index of the row with the lower bounds, the upper bounds are in the next row.
+     */
+    int computeConfidenceIntervals(ConfidenceIntervals intervals, int resamples, double confidence, long seed) {
+        ensureCapacity(size + 3);
+        int measures = 5 + recallsRP.length + recalls.length + accumulatedNames.length;
+        float[] values = new float[size * measures];
+        for (int i = 0; i < size; i++) {
+            int m = i * measures;
+            values[m++] = precision[i];
+            values[m++] = recall[i];
+            values[m++] = f1Score[i];
+            values[m++] = precToK[i];
+            values[m++] = map[i];
+            System.arraycopy(recallPrecision, i * recallsRP.length, values, m, recallsRP.length);
+            m += recallsRP.length;
+            System.arraycopy(interpolatedPrecision, i * recalls.length, values, m, recalls.length);
+            m += recalls.length;
+            System.arraycopy(accumulated, i * accumulatedNames.length, values, m, accumulatedNames.length);
         }
+        double[] bounds = intervals.bootstrap(values, measures, resamples, confidence, seed);
+
+        int lower = size + 1;
+        for (int row = lower; row <= lower + 1; row++) {
+            int m = (row - lower) * measures;
+            precision[row] = (float) bounds[m++];
+            recall[row] = (float) bounds[m++];
+            f1Score[row] = (float) bounds[m++];
+            precToK[row] = (float) bounds[m++];
+            map[row] = (float) bounds[m++];
+            for (int r = 0; r < recallsRP.length; r++)
+                recallPrecision[row * recallsRP.length + r] = (float) bounds[m++];
+            for (int r = 0; r < recalls.length; r++)
+                interpolatedPrecision[row * recalls.length + r] = (float) bounds[m++];
+            for (int a = 0; a < accumulatedNames.length; a++)
+                accumulated[row * accumulatedNames.length + a] = (float) bounds[m++];
+        }
+        return lower;
     }
 
-    public void addRInterpolatedPrecisionLine(String infoNeed, float recall, float precision) {
-        if(interpolatedPrecision.containsKey(infoNeed))
-            interpolatedPrecision.get(infoNeed).addRow(recall, precision);
-        else {
-            Matrix<Float, Float> m = new Matrix<>();
-            m.addRow(recall, precision);
-            interpolatedPrecision.put(infoNeed, m);
+    /**
+     * @param column Column of a measure.
+     * @param stride Number of values of every information need in the column.
+     * @param offset Position of the value in the values of an information need.
+     * @return The average of the measure.
+     */
+    private float calculateAverage(float[] column, int stride, int offset) {
+        float total = 0;
+        for (int i = 0; i < size; i++) {
+            total += column[i * stride + offset];
         }
+        return total / size;
     }
 
+    /**
+     * @param infoNeed Information need.
+     * @return The row of the information need.
+     */
+    int getIndex(String infoNeed) {
+        return infoNeeds.get(infoNeed);
+    }
 
+    float getPrecision(int i) {
+        return precision[i];
+    }
 
-    public String printMetrics(){
-        StringBuilder retval = new StringBuilder();
-        for(String infoNeed : interpolatedPrecision.keySet()) {
-            retval.append("INFO NEED " +infoNeed+ "\n");
-            retval.append("PRECISION:\t" + precision.get(infoNeed) + "\n");
-            retval.append("RECALL\t" + recall.get(infoNeed) + "\n");
-            retval.append("F1 SCORE\t" + f1Score.get(infoNeed) + "\n");
-            retval.append("PREC@10\t" + precToK.get(infoNeed) + "\n");
-            retval.append("AVERAGE_PRECISION:\t" + map.get(infoNeed) + "\n");
-            retval.append("RECALL-PRECISION\n");
-            for (float r : recallsRP)
-                retval.append("   " + r + "   " + recallPrecision.get(infoNeed).getB(r) + "\n");
-            retval.append("INTERPOLATED RECALL PRECISION\n");
-            for (float r : recalls)
-                retval.append("   " + r + "   " + interpolatedPrecision.get(infoNeed).getB(r) + "\n");
-        }
+    float getRecall(int i) {
+        return recall[i];
+    }
+
+    float getF1Score(int i) {
+        return f1Score[i];
+    }
 
-        retval.append("TOTAL\n");
-        retval.append("PRECISION:\t"  + calculateAverage(precision.values()) + "\n");
-        retval.append("RECALL\t"      + calculateAverage(recall.values()) + "\n");
-        retval.append("F1 SCORE\t"    + calculateAverage(f1Score.values()) + "\n");
-        retval.append("PREC@10\t"     + calculateAverage(precToK.values()) + "\n");
-        retval.append("MAP:\t"        + calculateAverage(map.values()) + "\n");
-        retval.append("INTERPOLATED RECALL PRECISION\n");
+    float getPrecToK(int i) {
+        return precToK[i];
+    }
 
-        Map<Float, Float>averages = calculateInterpolatedPrecisionAverage(interpolatedPrecision.values());
-        for(Map.Entry em : averages.entrySet())
-            retval.append("    " + em.getKey() + "   " + em.getValue() + "\n");
+    float getAveragePrecision(int i) {
+        return map[i];
+    }
 
+    float getRecallPrecision(int i, int level) {
+        return recallPrecision[i * recallsRP.length + level];
+    }
 
-        return retval.toString();
+    float getInterpolatedPrecision(int i, int level) {
+        return interpolatedPrecision[i * recalls.length + level];
     }
 
-    private Map<Float, Float> calculateInterpolatedPrecisionAverage(Collection<Matrix<Float,Float>> interpolatedLines){
-        Map <Float, Float> retval = new LinkedHashMap<>();
-        float total;
-        for(float r: recalls) {
-            total = 0;
-            for (Matrix<Float, Float> interpolatedLine : interpolatedLines) {
-                total += interpolatedLine.getB(r);
-            }
-            retval.put(r,total/interpolatedLines.size());
-        }
-        return retval;
+    /**
+     * @return Number of measures registered in the engine, like NDCG@10, of every information need.
+     */
+    int getAccumulatedCount() {
+        return accumulatedNames.length;
     }
 
-    private float calculateAverage(Collection<Float> set) {
-        float total = 0;
-        for(float value : set){
-            total += value;
-        }
-        return total/set.size();
+    String getAccumulatedName(int a) {
+        return accumulatedNames[a];
+    }
+
+    float getAccumulated(int i, int a) {
+        return accumulated[i * accumulatedNames.length + a];
     }
+
+    /**
+     * @return The evaluated information needs.
+     */
+    public Set<String> getInfoNeeds() {
+        return Collections.unmodifiableSet(infoNeeds.keySet());
+    }
+
+    public float getF1Score(String infoNeed) {
+        return f1Score[infoNeeds.get(infoNeed)];
+    }
+
+    public float getPrecToK(String infoNeed) {
+        return precToK[infoNeeds.get(infoNeed)];
+    }
+
+    public float getAveragePrecision(String infoNeed) {
+        return map[infoNeeds.get(infoNeed)];
+    }
+
     public float getPrecision(String infoNeed) {
-        return precision.get(infoNeed);
+        return precision[infoNeeds.get(infoNeed)];
     }
 
     public float getRecall(String infoNeed) {
-        return recall.get(infoNeed);
+        return recall[infoNeeds.get(infoNeed)];
     }
 }
@@ -0,0 +1,87 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the measures of an evaluation in a format, one information need at a time, so every information need can be
+ * written as soon as it is evaluated.
+ * Every block is built in a reused buffer, the numbers are appended without creating a String for them, and the buffer
+ * is copied to the output without creating a String for the block.
+ */
+public abstract class MetricsWriter implements Closeable {
+    public static final String[] FORMATS = {"text", "trec", "csv", "jsonl"};
+
+    protected final StringBuilder line = new StringBuilder(1024);
+    private final Writer out;
+    private char[] chars = new char[1024];
+
+    protected MetricsWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * @param format One of {@link #FORMATS}: the text layout, the tab separated format of trec_eval, CSV or JSON Lines.
+     * @param out Output of the writer, it is closed with the writer.
+     * @return The writer of the format.
+     */
+    public static MetricsWriter create(String format, Writer out) {
+        switch (format) {
+            case "text":
+                return new TextMetricsWriter(out);
+            case "trec":
+                return new TrecEvalMetricsWriter(out);
+            case "csv":
+                return new CsvMetricsWriter(out);
+            case "jsonl":
+                return new JsonLinesMetricsWriter(out);
+            default:
+                throw new IllegalArgumentException("Unknown output format " + format + ", expected one of "
+                        + String.join(", ", FORMATS));
+        }
+    }
+
+    /**
+     * Writes the measures of an information need.
+     * @param metrics Metrics which contain the information need.
+     * @param infoNeed Information need to write.
+     * @throws IOException If the output can not be written.
+     */
+    public abstract void writeInfoNeed(Metrics metrics, String infoNeed) throws IOException;
+
+    /**
+     * Writes the averages of every information need of the metrics, after the last information need.
+     * @param metrics Metrics of the evaluation.
+     * @throws IOException If the output can not be written.
+     */
+    public abstract void writeTotal(Metrics metrics) throws IOException;
+
+    /**
+     * Writes the confidence intervals of the averages, after the averages.
+     * @param metrics Metrics of the evaluation.
+     * @param lower Row of the metrics with the lower bounds, the upper bounds are in the next row.
+     * @param confidence Confidence level of the intervals.
+     * @param resamples Number of bootstrap resamples of the intervals.
+     * @throws IOException If the output can not be written.
+     */
+    public abstract void writeConfidenceIntervals(Metrics metrics, int lower, double confidence, int resamples)
+            throws IOException;
+
+    /**
+     * Writes the content of {@link #line} and empties it.
+     * @throws IOException If the output can not be written.
+     */
+    protected void flushLine() throws IOException {
+        int length = line.length();
+        if (length > chars.length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        line.getChars(0, length, chars, 0);
+        out.write(chars, 0, length);
+        line.setLength(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,142 @@
+import com.recinfo.stats.DiscriminativePower;
+
+import java.util.*;
+
+/**
+ * Discriminative power analysis of the measures over a set of systems: the paired bootstrap test of every pair of
+ * systems and the swap rate of every pair between random halves of the topics.
+ * The per-topic scores of every measure are copied to a dense matrix with a row per topic and a column per system, so
+ * the resamples of every pair are computed in a single pass over the topics. The measures are the average precision,
+ * the precision at 10, the F1 score and the accumulated measures of the engine.
+ * Like in {@link Comparison}, only the information needs evaluated in every system are used and a score which is not a
+ * number is taken as 0.
+ */
+public class PowerAnalysis {
+    private static final String[] MEASURES = {"AVERAGE_PRECISION", "PREC@10", "F1 SCORE"};
+
+    private final String[] names;
+    private final Metrics[] results;
+    private final List<String> infoNeeds;
+    private final List<String> measures;
+
+    /**
+     * @param names Name of every system.
+     * @param results Evaluation of every system, with the same engine.
+     */
+    public PowerAnalysis(String[] names, Metrics[] results) {
+        this.names = names;
+        this.results = results;
+        this.infoNeeds = new ArrayList<>(results[0].getInfoNeeds());
+        for (Metrics metrics : results)
+            infoNeeds.retainAll(metrics.getInfoNeeds());
+        this.measures = new ArrayList<>(Arrays.asList(MEASURES));
+        for (int a = 0; a < results[0].getAccumulatedCount(); a++)
+            measures.add(results[0].getAccumulatedName(a));
+    }
+
+    /**
+     * @param measure Index of the measure in {@link #measures}.
+     * @return The score of every compared information need and system, the scores of information need t are in
+     *         positions t * systems to (t + 1) * systems - 1.
+     */
+    private double[] scores(int measure) {
+        double[] retval = new double[infoNeeds.size() * results.length];
+        for (int r = 0; r < results.length; r++) {
+            Metrics metrics = results[r];
+            for (int t = 0; t < infoNeeds.size(); t++) {
+                int i = metrics.getIndex(infoNeeds.get(t));
+                float score;
+                if (measure == 0)
+                    score = metrics.getAveragePrecision(i);
+                else if (measure == 1)
+                    score = metrics.getPrecToK(i);
+                else if (measure == 2)
+                    score = metrics.getF1Score(i);
+                else
+                    score = metrics.getAccumulated(i, measure - MEASURES.length);
+                retval[t * results.length + r] = Float.isNaN(score) ? 0 : score;
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Tests every pair of systems in every measure.
+     * @param iterations Number of bootstrap resamples.
+     * @param trials Number of random splits of the topics of the swap rate.
+     * @param alpha Significance level.
+     * @param seed Seed of the resamples and the splits.
+     * @param threads Number of threads, 0 to use every core.
+     * @return A table with the measures ranked by their discriminative power, the fraction of pairs of systems with a
+     *         significant difference, followed by a table of the pairs of systems of every measure ranked by their
+     *         p-value.
+     */
+    public String printPower(int iterations, int trials, double alpha, long seed, int threads) {
+        DiscriminativePower power = new DiscriminativePower(threads);
+        int systems = results.length;
+        int pairs = systems * (systems - 1) / 2;
+        int topics = infoNeeds.size();
+        double[][] means = new double[measures.size()][systems];
+        double[][] pValues = new double[measures.size()][];
+        double[][] swapRates = new double[measures.size()][];
+        int[] significant = new int[measures.size()];
+        double[] meanSwapRate = new double[measures.size()];
+        for (int m = 0; m < measures.size(); m++) {
+            double[] scores = scores(m);
+            for (int t = 0; t < topics; t++) {
+                for (int r = 0; r < systems; r++)
+                    means[m][r] += scores[t * systems + r];
+            }
+            for (int r = 0; r < systems; r++)
+                means[m][r] /= topics;
+            pValues[m] = power.bootstrap(scores, systems, iterations, seed);
+            swapRates[m] = power.swapRate(scores, systems, trials, seed);
+            for (int a = 0; a < systems; a++) {
+                for (int b = a + 1; b < systems; b++) {
+                    if (pValues[m][a * systems + b] < alpha)
+                        significant[m]++;
+                    meanSwapRate[m] += swapRates[m][a * systems + b];
+                }
+            }
+            meanSwapRate[m] /= Math.max(pairs, 1);
+        }
+
+        Integer[] order = new Integer[measures.size()];
+        for (int m = 0; m < order.length; m++)
+            order[m] = m;
+        // The most discriminative measures first, the ties by the lowest swap rate
+        Arrays.sort(order, Comparator.comparingInt((Integer m) -> -significant[m])
+                .thenComparingDouble(m -> meanSwapRate[m]));
+
+        StringBuilder retval = new StringBuilder();
+        retval.append("TOPICS\t").append(topics).append("\n");
+        retval.append("RUNS\t").append(systems).append("\n");
+        retval.append("MEASURE\tPAIRS\tSIGNIFICANT\tDISCRIMINATIVE POWER\tSWAP RATE\n");
+        for (int m : order) {
+            retval.append(measures.get(m)).append("\t").append(pairs).append("\t").append(significant[m]);
+            retval.append("\t").append(pairs > 0 ? (double) significant[m] / pairs : 0);
+            retval.append("\t").append(meanSwapRate[m]).append("\n");
+        }
+        for (int m : order) {
+            retval.append("\n");
+            retval.append("MEASURE\tRUN A\tRUN B\tMEAN A\tMEAN B\tDIFFERENCE\tBOOTSTRAP\tSWAP RATE\n");
+            List<int[]> ranked = new ArrayList<>();
+            for (int a = 0; a < systems; a++) {
+                for (int b = a + 1; b < systems; b++)
+                    ranked.add(new int[] {a, b});
+            }
+            double[] p = pValues[m];
+            ranked.sort(Comparator.comparingDouble((int[] pair) -> p[pair[0] * systems + pair[1]]));
+            for (int[] pair : ranked) {
+                int a = pair[0];
+                int b = pair[1];
+                retval.append(measures.get(m)).append("\t").append(names[a]).append("\t").append(names[b]);
+                retval.append("\t").append(means[m][a]).append("\t").append(means[m][b]);
+                retval.append("\t").append(means[m][a] - means[m][b]);
+                retval.append("\t").append(p[a * systems + b]);
+                retval.append("\t").append(swapRates[m][a * systems + b]).append("\n");
+            }
+        }
+        return retval.toString();
+    }
+}
@@ -0,0 +1,218 @@
+import com.recinfo.collection.InfoNeedJudgements;
+import com.recinfo.collection.Judgements;
+import com.recinfo.collection.RecoveredDocuments;
+import com.recinfo.concurrent.Parallel;
+import com.recinfo.metrics.MetricEngine;
+import com.recinfo.metrics.TopicMeasures;
+import com.recinfo.profile.Profiler;
+import com.recinfo.stats.RankCorrelation;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Simulation of incomplete judgements to study the reusability of a test collection.
+ * The systems are evaluated with samples of the judgements, a random fraction of the judgements of every information
+ * need or the judgements of a pool of the top documents of every system, and the ranking of the systems by the mean
+ * average precision and the precision at 10 is compared with the ranking by the full judgements with Kendall's tau.
+ * A sample is made as the bits of the judgements of an information need when it is evaluated, and only the judgements
+ * of that information need are copied, so the judgements are not copied for every sample. The samples are evaluated
+ * in parallel, every one with its own generator split from the seed in order, so the result only depends on the seed
+ * and not on the number of threads.
+ * Like in {@link Comparison}, a score which is not a number is taken as 0. The samples where every system has the same
+ * mean in a measure have no Kendall's tau and they are left out of the table.
+ */
+public class Simulation {
+    private static final String[] MEASURES = {"MAP", "PREC@10"};
+
+    private final MetricEngine engine;
+    private final RecoveredDocuments[] runs;
+    private final List<String> infoNeeds;
+    private final InfoNeedJudgements[] judgements;
+    // Sum of the scores of every measure and system in the information needs without judgements, which do not change
+    private final double[][] unjudged;
+    private final double[][] full;
+
+    /**
+     * Evaluates every system with the full judgements.
+     * @param engine Metric engine used to evaluate every information need.
+     * @param judgements Judgements of the retrieval information system.
+     * @param runs Recovered documents of every system, loaded with a dictionary whose parent is the one of the
+     *             judgements.
+     */
+    public Simulation(MetricEngine engine, Judgements judgements, RecoveredDocuments[] runs) {
+        this.engine = engine;
+        this.runs = runs;
+        this.infoNeeds = new ArrayList<>(judgements.getInfoNeeds());
+        this.judgements = new InfoNeedJudgements[infoNeeds.size()];
+        for (int t = 0; t < infoNeeds.size(); t++)
+            this.judgements[t] = judgements.getJudgementsByInfoNeed(infoNeeds.get(t));
+        this.unjudged = new double[MEASURES.length][runs.length];
+        for (int r = 0; r < runs.length; r++) {
+            for (String infoNeed : runs[r].getInfoNeeds()) {
+                if (!judgements.getInfoNeeds().contains(infoNeed))
+                    add(unjudged, r, engine.evaluate(infoNeed, runs[r].getDocumentsByInfoNeed(infoNeed),
+                            judgements.getJudgementsByInfoNeed(infoNeed)));
+            }
+        }
+        this.full = evaluate(t -> this.judgements[t]);
+    }
+
+    /**
+     * Evaluates every system with a sample of the judgements.
+     * @param sample Gets the sample of the judgements of every judged information need, by its index in
+     *               {@link #infoNeeds}. It is called once for every information need, in order.
+     * @return The mean of every measure and system.
+     */
+    private double[][] evaluate(IntFunction<InfoNeedJudgements> sample) {
+        double[][] retval = new double[MEASURES.length][];
+        for (int m = 0; m < MEASURES.length; m++)
+            retval[m] = unjudged[m].clone();
+        for (int t = 0; t < infoNeeds.size(); t++) {
+            String infoNeed = infoNeeds.get(t);
+            InfoNeedJudgements infoNeedJudgements = sample.apply(t);
+            for (int r = 0; r < runs.length; r++) {
+                if (runs[r].getInfoNeeds().contains(infoNeed))
+                    add(retval, r, engine.evaluate(infoNeed, runs[r].getDocumentsByInfoNeed(infoNeed),
+                            infoNeedJudgements));
+            }
+        }
+        for (int r = 0; r < runs.length; r++) {
+            int size = runs[r].getInfoNeeds().size();
+            for (int m = 0; m < MEASURES.length; m++)
+                retval[m][r] /= size;
+        }
+        return retval;
+    }
+
+    private static void add(double[][] sums, int run, TopicMeasures measures) {
+        float averagePrecision = measures.getAveragePrecision();
+        float precToK = measures.getPrecToK();
+        sums[0][run] += Float.isNaN(averagePrecision) ? 0 : averagePrecision;
+        sums[1][run] += Float.isNaN(precToK) ? 0 : precToK;
+    }
+
+    /**
+     * @param means Mean of every measure and system with a sample of the judgements.
+     * @return The Kendall's tau of every measure between the ranking of the systems with the sample and with the full
+     *         judgements.
+     */
+    private double[] correlation(double[][] means) {
+        double[] retval = new double[MEASURES.length];
+        for (int m = 0; m < MEASURES.length; m++)
+            retval[m] = RankCorrelation.kendallTau(full[m], means[m]);
+        return retval;
+    }
+
+    /**
+     * Evaluates the systems with random samples of a fraction of the judgements of every information need.
+     * @param rate Fraction of the judgements kept in every information need, at least one judgement is kept.
+     * @param samples Number of samples.
+     * @param seed Seed of the generators of the samples.
+     * @param threads Number of threads, 1 evaluates the samples in order in the current thread and 0 uses every core.
+     * @return The Kendall's tau of every sample and measure, indexed by sample.
+     */
+    public double[][] sampleJudgements(double rate, int samples, long seed, int threads) {
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[samples];
+        for (int s = 0; s < samples; s++)
+            randoms[s] = root.split();
+        double[][] retval = new double[samples][];
+        Profiler.Timer timer = Profiler.start("simulate samples");
+        Parallel.forEach(samples, threads, s -> {
+            SplittableRandom random = randoms[s];
+            retval[s] = correlation(evaluate(t -> {
+                int n = judgements[t].getNumJudged();
+                int[] positions = new int[n];
+                for (int i = 0; i < n; i++)
+                    positions[i] = i;
+                // Partial Fisher-Yates shuffle, the first positions are the sample
+                int kept = n == 0 ? 0 : Math.max(1, Math.min(n, (int) Math.round(rate * n)));
+                long[] bits = new long[(n + 63) >>> 6];
+                for (int i = 0; i < kept; i++) {
+                    int j = i + random.nextInt(n - i);
+                    int position = positions[j];
+                    positions[j] = positions[i];
+                    positions[i] = position;
+                    bits[position >>> 6] |= 1L << position;
+                }
+                return judgements[t].subset(bits);
+            }));
+        });
+        timer.stop(samples);
+        return retval;
+    }
+
+    /**
+     * Evaluates the systems with the judgements of the pool of the top documents of every system, the judged documents
+     * out of the pool are taken as not judged.
+     * @param depth Number of documents of every system in the pool.
+     * @return The Kendall's tau of every measure.
+     */
+    public double[] poolDepth(int depth) {
+        return correlation(evaluate(t -> {
+            long[] bits = new long[(judgements[t].getNumJudged() + 63) >>> 6];
+            for (RecoveredDocuments run : runs) {
+                int[] ranking = run.getDocumentsByInfoNeed(infoNeeds.get(t));
+                for (int rank = 0; rank < Math.min(depth, ranking.length); rank++) {
+                    int position = judgements[t].getPosition(ranking[rank]);
+                    if (position >= 0)
+                        bits[position >>> 6] |= 1L << position;
+                }
+            }
+            return judgements[t].subset(bits);
+        }));
+    }
+
+    /**
+     * Runs every simulation.
+     * @param rates Fractions of the judgements of the random samples.
+     * @param depths Depths of the pools.
+     * @param samples Number of random samples of every fraction.
+     * @param seed Seed of the random samples.
+     * @param threads Number of threads used to evaluate the samples, 0 to use every core.
+     * @return A table with the mean, standard deviation, minimum and maximum Kendall's tau of every simulation and
+     *         measure.
+     */
+    public String printSimulation(double[] rates, int[] depths, int samples, long seed, int threads) {
+        StringBuilder retval = new StringBuilder();
+        retval.append("RUNS\t").append(runs.length).append("\n");
+        retval.append("SAMPLE\tPARAMETER\tMEASURE\tSAMPLES\tMEAN TAU\tSTDDEV TAU\tMIN TAU\tMAX TAU\n");
+        for (double rate : rates) {
+            double[][] taus = sampleJudgements(rate, samples, seed, threads);
+            for (int m = 0; m < MEASURES.length; m++) {
+                double[] values = new double[samples];
+                for (int s = 0; s < samples; s++)
+                    values[s] = taus[s][m];
+                appendRow(retval, "judgements", Double.toString(rate), MEASURES[m], values);
+            }
+        }
+        for (int depth : depths) {
+            double[] taus = poolDepth(depth);
+            for (int m = 0; m < MEASURES.length; m++)
+                appendRow(retval, "pool", Integer.toString(depth), MEASURES[m], new double[] {taus[m]});
+        }
+        return retval.toString();
+    }
+
+    private static void appendRow(StringBuilder out, String sample, String parameter, String measure,
+                                  double[] taus) {
+        double[] values = Arrays.stream(taus).filter(tau -> !Double.isNaN(tau)).toArray();
+        double mean = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : values) {
+            mean += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        mean /= values.length;
+        double variance = 0;
+        for (double value : values)
+            variance += (value - mean) * (value - mean);
+        double deviation = values.length > 1 ? Math.sqrt(variance / (values.length - 1)) : 0;
+        out.append(sample).append("\t").append(parameter).append("\t").append(measure).append("\t")
+                .append(values.length).append("\t").append(mean).append("\t").append(deviation)
+                .append("\t").append(min).append("\t").append(max).append("\n");
+    }
+}
@@ -0,0 +1,79 @@
+import java.io.Writer;
+import java.io.IOException;
+
+/**
+ * Writes the measures in the text layout of the evaluator: a block per information need and a block with the averages.
+ */
+public class TextMetricsWriter extends MetricsWriter {
+
+    public TextMetricsWriter(Writer out) {
+        super(out);
+    }
+
+    @Override
+    public void writeInfoNeed(Metrics metrics, String infoNeed) throws IOException {
+        int i = metrics.getIndex(infoNeed);
+        line.append("INFO NEED ").append(infoNeed).append('\n');
+        line.append("PRECISION:\t").append(metrics.getPrecision(i)).append('\n');
+        line.append("RECALL\t").append(metrics.getRecall(i)).append('\n');
+        line.append("F1 SCORE\t").append(metrics.getF1Score(i)).append('\n');
+        line.append("PREC@10\t").append(metrics.getPrecToK(i)).append('\n');
+        line.append("AVERAGE_PRECISION:\t").append(metrics.getAveragePrecision(i)).append('\n');
+        appendAccumulated(metrics, i);
+        line.append("RECALL-PRECISION\n");
+        for (int r = 0; r < Metrics.recallsRP.length; r++)
+            line.append("   ").append(Metrics.recallsRP[r]).append("   ").append(metrics.getRecallPrecision(i, r))
+                    .append('\n');
+        line.append("INTERPOLATED RECALL PRECISION\n");
+        for (int r = 0; r < Metrics.recalls.length; r++)
+            line.append("   ").append(Metrics.recalls[r]).append("   ").append(metrics.getInterpolatedPrecision(i, r))
+                    .append('\n');
+        flushLine();
+    }
+
+    @Override
+    public void writeTotal(Metrics metrics) throws IOException {
+        int i = metrics.computeTotal();
+        line.append("TOTAL\n");
+        line.append("PRECISION:\t").append(metrics.getPrecision(i)).append('\n');
+        line.append("RECALL\t").append(metrics.getRecall(i)).append('\n');
+        line.append("F1 SCORE\t").append(metrics.getF1Score(i)).append('\n');
+        line.append("PREC@10\t").append(metrics.getPrecToK(i)).append('\n');
+        line.append("MAP:\t").append(metrics.getAveragePrecision(i)).append('\n');
+        appendAccumulated(metrics, i);
+        line.append("INTERPOLATED RECALL PRECISION\n");
+        for (int r = 0; r < Metrics.recalls.length; r++)
+            line.append("    ").append(Metrics.recalls[r]).append("   ").append(metrics.getInterpolatedPrecision(i, r))
+                    .append('\n');
+        flushLine();
+    }
+
+    @Override
+    public void writeConfidenceIntervals(Metrics metrics, int lower, double confidence, int resamples)
+            throws IOException {
+        int upper = lower + 1;
+        line.append("CONFIDENCE INTERVALS ").append(confidence).append(" (").append(resamples).append(" RESAMPLES)\n");
+        line.append("PRECISION:\t").append(metrics.getPrecision(lower)).append('\t').append(metrics.getPrecision(upper))
+                .append('\n');
+        line.append("RECALL\t").append(metrics.getRecall(lower)).append('\t').append(metrics.getRecall(upper)).append('\n');
+        line.append("F1 SCORE\t").append(metrics.getF1Score(lower)).append('\t').append(metrics.getF1Score(upper))
+                .append('\n');
+        line.append("PREC@10\t").append(metrics.getPrecToK(lower)).append('\t').append(metrics.getPrecToK(upper))
+                .append('\n');
+        line.append("MAP:\t").append(metrics.getAveragePrecision(lower)).append('\t')
+                .append(metrics.getAveragePrecision(upper)).append('\n');
+        for (int a = 0; a < metrics.getAccumulatedCount(); a++)
+            line.append(metrics.getAccumulatedName(a)).append('\t').append(metrics.getAccumulated(lower, a)).append('\t')
+                    .append(metrics.getAccumulated(upper, a)).append('\n');
+        line.append("INTERPOLATED RECALL PRECISION\n");
+        for (int r = 0; r < Metrics.recalls.length; r++)
+            line.append("    ").append(Metrics.recalls[r]).append("   ").append(metrics.getInterpolatedPrecision(lower, r))
+                    .append("   ").append(metrics.getInterpolatedPrecision(upper, r)).append('\n');
+        flushLine();
+    }
+
+    private void appendAccumulated(Metrics metrics, int i) {
+        for (int a = 0; a < metrics.getAccumulatedCount(); a++)
+            line.append(metrics.getAccumulatedName(a)).append('\t').append(metrics.getAccumulated(i, a)).append('\n');
+    }
+}
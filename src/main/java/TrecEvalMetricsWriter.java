@@ -0,0 +1,108 @@
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the measures in the format of trec_eval -q: a line per measure and information need with the name of the
+ * measure, the information need and the value with four decimals, separated by tabs. The averages use the information
+ * need "all".
+ * The measures use the names of trec_eval when there is one, the measures registered in the engine use their name with
+ * '@' replaced by '_', like NDCG_10. The average precision is not the map of trec_eval, it only looks at the first 45
+ * documents and is divided by the relevant documents recovered, so it keeps the name AVERAGE_PRECISION_45.
+ */
+public class TrecEvalMetricsWriter extends MetricsWriter {
+    private static final int NAME_WIDTH = 22;
+
+    // Start of the name of the current line, to pad it
+    private int nameStart;
+
+    public TrecEvalMetricsWriter(Writer out) {
+        super(out);
+    }
+
+    @Override
+    public void writeInfoNeed(Metrics metrics, String infoNeed) throws IOException {
+        write(metrics, metrics.getIndex(infoNeed), infoNeed);
+    }
+
+    @Override
+    public void writeTotal(Metrics metrics) throws IOException {
+        write(metrics, metrics.computeTotal(), "all");
+    }
+
+    /**
+     * The bounds are written as the information needs "lower" and "upper".
+     */
+    @Override
+    public void writeConfidenceIntervals(Metrics metrics, int lower, double confidence, int resamples)
+            throws IOException {
+        write(metrics, lower, "lower");
+        write(metrics, lower + 1, "upper");
+    }
+
+    private void write(Metrics metrics, int i, String infoNeed) throws IOException {
+        appendLine("set_P", infoNeed, metrics.getPrecision(i));
+        appendLine("set_recall", infoNeed, metrics.getRecall(i));
+        appendLine("set_F", infoNeed, metrics.getF1Score(i));
+        appendLine("P_10", infoNeed, metrics.getPrecToK(i));
+        appendLine("AVERAGE_PRECISION_45", infoNeed, metrics.getAveragePrecision(i));
+        for (int a = 0; a < metrics.getAccumulatedCount(); a++)
+            appendLine(metrics.getAccumulatedName(a).replace('@', '_'), infoNeed, metrics.getAccumulated(i, a));
+        for (int r = 0; r < Metrics.recallsRP.length; r++) {
+            appendName("P_at_recall_");
+            appendFixed(Metrics.recallsRP[r], 2);
+            appendValue(infoNeed, metrics.getRecallPrecision(i, r));
+        }
+        for (int r = 0; r < Metrics.recalls.length; r++) {
+            appendName("iprec_at_recall_");
+            appendFixed(Metrics.recalls[r], 2);
+            appendValue(infoNeed, metrics.getInterpolatedPrecision(i, r));
+        }
+        flushLine();
+    }
+
+    private void appendName(String name) {
+        nameStart = line.length();
+        line.append(name);
+    }
+
+    private void appendLine(String name, String infoNeed, float value) {
+        appendName(name);
+        appendValue(infoNeed, value);
+    }
+
+    /**
+     * Pads the name of the measure and appends the information need and the value.
+     */
+    private void appendValue(String infoNeed, float value) {
+        for (int n = line.length() - nameStart; n < NAME_WIDTH; n++)
+            line.append(' ');
+        line.append('\t').append(infoNeed).append('\t');
+        appendFixed(value, 4);
+        line.append('\n');
+    }
+
+    /**
+     * Appends a number with a fixed number of decimals, like printf with %.4f.
+     */
+    private void appendFixed(float value, int decimals) {
+        if (Float.isNaN(value)) {
+            line.append("nan");
+            return;
+        }
+        if (Float.isInfinite(value)) {
+            line.append(value > 0 ? "inf" : "-inf");
+            return;
+        }
+        long scale = 1;
+        for (int d = 0; d < decimals; d++)
+            scale *= 10;
+        long scaled = Math.round(Math.abs((double) value) * scale);
+        if (value < 0 && scaled != 0)
+            line.append('-');
+        line.append(scaled / scale).append('.');
+        long fraction = scaled % scale;
+        for (long digit = scale / 10; digit > 1 && fraction < digit; digit /= 10)
+            line.append('0');
+        line.append(fraction);
+    }
+}
@@ -0,0 +1,185 @@
+package com.recinfo;
+
+import java.util.Locale;
+
+/**
+ * Measure computed by a {@link RankingEvaluator}, with the same definition and name than the one reported by the
+ * evaluation of the files. The measures with a cutoff only look at the first k documents of the ranking.
+ * Measures can not be modified, so they can be shared between threads.
+ */
+public final class Measure {
+
+    /**
+     * Kinds of measure.
+     */
+    enum Type {
+        PRECISION, RECALL, F1_SCORE, PRECISION_AT, RECALL_AT, AVERAGE_PRECISION_AT, NDCG_AT, UNJUDGED, BPREF, INFAP,
+        CONDENSED_AP
+    }
+
+    private final Type type;
+    private final int k;
+    private final String name;
+
+    private Measure(Type type, int k, String name) {
+        this.type = type;
+        this.k = k;
+        this.name = name;
+    }
+
+    private static Measure cutoff(Type type, String prefix, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("The cutoff of " + prefix + k + " must be positive");
+        }
+        return new Measure(type, k, prefix + k);
+    }
+
+    /**
+     * @return Fraction of the recovered documents which are relevant.
+     */
+    public static Measure precision() {
+        return new Measure(Type.PRECISION, 0, "PRECISION");
+    }
+
+    /**
+     * @return Fraction of the relevant documents which are recovered.
+     */
+    public static Measure recall() {
+        return new Measure(Type.RECALL, 0, "RECALL");
+    }
+
+    /**
+     * @return Harmonic mean of the precision and the recall.
+     */
+    public static Measure f1Score() {
+        return new Measure(Type.F1_SCORE, 0, "F1 SCORE");
+    }
+
+    /**
+     * @param k Number of top documents.
+     * @return Fraction of the first k documents which are relevant, P@k.
+     */
+    public static Measure precisionAt(int k) {
+        return cutoff(Type.PRECISION_AT, "P@", k);
+    }
+
+    /**
+     * @param k Number of top documents.
+     * @return Fraction of the relevant documents which are in the first k documents, R@k.
+     */
+    public static Measure recallAt(int k) {
+        return cutoff(Type.RECALL_AT, "R@", k);
+    }
+
+    /**
+     * @param k Number of top documents.
+     * @return Average of the precision in the positions of the relevant documents of the first k documents, AP@k.
+     */
+    public static Measure averagePrecisionAt(int k) {
+        return cutoff(Type.AVERAGE_PRECISION_AT, "AP@", k);
+    }
+
+    /**
+     * @param k Number of top documents.
+     * @return Normalized discounted cumulative gain of the first k documents, NDCG@k.
+     */
+    public static Measure ndcgAt(int k) {
+        return cutoff(Type.NDCG_AT, "NDCG@", k);
+    }
+
+    /**
+     * @return Fraction of the recovered documents which are not judged.
+     */
+    public static Measure unjudged() {
+        return new Measure(Type.UNJUDGED, 0, "UNJUDGED");
+    }
+
+    /**
+     * @return Binary preference, like trec_eval.
+     */
+    public static Measure bpref() {
+        return new Measure(Type.BPREF, 0, "BPREF");
+    }
+
+    /**
+     * @return Inferred average precision, like trec_eval.
+     */
+    public static Measure inferredAveragePrecision() {
+        return new Measure(Type.INFAP, 0, "INFAP");
+    }
+
+    /**
+     * @return Average precision of the ranking without its unjudged documents.
+     */
+    public static Measure condensedAveragePrecision() {
+        return new Measure(Type.CONDENSED_AP, 0, "CONDENSED AP");
+    }
+
+    /**
+     * @param name Name of the measure as reported in the evaluation, like P@10, NDCG@20 or BPREF, in any case.
+     * @return The measure with the name.
+     * @throws IllegalArgumentException If there is no measure with the name.
+     */
+    public static Measure parse(String name) {
+        String upper = name.trim().toUpperCase(Locale.ROOT);
+        int at = upper.indexOf('@');
+        if (at >= 0) {
+            int k;
+            try {
+                k = Integer.parseInt(upper.substring(at + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Wrong cutoff in measure " + name);
+            }
+            switch (upper.substring(0, at)) {
+                case "P":
+                    return precisionAt(k);
+                case "R":
+                    return recallAt(k);
+                case "AP":
+                    return averagePrecisionAt(k);
+                case "NDCG":
+                    return ndcgAt(k);
+                default:
+                    throw new IllegalArgumentException("Unknown measure " + name);
+            }
+        }
+        switch (upper) {
+            case "PRECISION":
+                return precision();
+            case "RECALL":
+                return recall();
+            case "F1 SCORE":
+                return f1Score();
+            case "UNJUDGED":
+                return unjudged();
+            case "BPREF":
+                return bpref();
+            case "INFAP":
+                return inferredAveragePrecision();
+            case "CONDENSED AP":
+                return condensedAveragePrecision();
+            default:
+                throw new IllegalArgumentException("Unknown measure " + name);
+        }
+    }
+
+    Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The number of top documents of the measure, 0 if it looks at the whole ranking.
+     */
+    public int getCutoff() {
+        return k;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,193 @@
+package com.recinfo;
+
+import com.recinfo.collection.InfoNeedJudgements;
+
+import java.util.Arrays;
+
+/**
+ * Judgements of a set of topics for a {@link RankingEvaluator}, with topics and documents identified by ints chosen by
+ * the caller, like the positions of the documents in an index.
+ * The judgements of every topic are kept like the ones loaded from a file, a sorted array of documents with their
+ * relevance in a parallel array, so they are looked up with a binary search. They can not be modified once built, so
+ * a single instance can be shared by every thread that evaluates rankings.
+ */
+public class Qrels {
+    private static final InfoNeedJudgements EMPTY = new InfoNeedJudgements(null, new int[0], new byte[0]);
+
+    // Sorted ids of the topics with judgements, and their judgements in the same position
+    private final int[] topics;
+    private final InfoNeedJudgements[] judgements;
+
+    private Qrels(int[] topics, InfoNeedJudgements[] judgements) {
+        this.topics = topics;
+        this.judgements = judgements;
+    }
+
+    /**
+     * Builds the judgements from parallel arrays, one position per judgement.
+     * @param topics Topic of every judgement.
+     * @param documents Judged document of every judgement.
+     * @param relevances Relevance of every judgement, between -128 and 127.
+     * @return The judgements. If a document is judged several times in a topic the last judgement is kept.
+     */
+    public static Qrels of(int[] topics, int[] documents, int[] relevances) {
+        if (topics.length != documents.length || topics.length != relevances.length) {
+            throw new IllegalArgumentException("The topics, documents and relevances must have the same length");
+        }
+        Builder builder = new Builder(topics.length);
+        for (int i = 0; i < topics.length; i++) {
+            builder.add(topics[i], documents[i], relevances[i]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Accumulates judgements in primitive arrays. It can be reused to build several judgements.
+     */
+    public static class Builder {
+        private int[] topics;
+        private int[] documents;
+        private byte[] relevances;
+        private int size;
+
+        public Builder() {
+            this(1024);
+        }
+
+        /**
+         * @param expected Number of judgements expected, the builder grows if there are more.
+         */
+        public Builder(int expected) {
+            int capacity = Math.max(expected, 16);
+            topics = new int[capacity];
+            documents = new int[capacity];
+            relevances = new byte[capacity];
+        }
+
+        /**
+         * Adds a judgement. If the document is already judged in the topic the last judgement is kept.
+         * @param topic Id of the topic.
+         * @param document Id of the document.
+         * @param relevance Relevance of the document, between -128 and 127. Every positive relevance is relevant for
+         *                  the binary measures and is the gain of the NDCG.
+         * @return This builder.
+         */
+        public Builder add(int topic, int document, int relevance) {
+            if (!InfoNeedJudgements.isValidGrade(relevance)) {
+                throw new IllegalArgumentException("Relevance " + relevance + " out of range, it must be between "
+                        + Byte.MIN_VALUE + " and " + Byte.MAX_VALUE);
+            }
+            if (size == topics.length) {
+                topics = Arrays.copyOf(topics, size * 2);
+                documents = Arrays.copyOf(documents, size * 2);
+                relevances = Arrays.copyOf(relevances, size * 2);
+            }
+            topics[size] = topic;
+            documents[size] = document;
+            relevances[size] = (byte) relevance;
+            size++;
+            return this;
+        }
+
+        /**
+         * Removes every judgement added, keeping the memory of the builder.
+         */
+        public void clear() {
+            size = 0;
+        }
+
+        /**
+         * @return The judgements added, the builder is not modified.
+         */
+        public Qrels build() {
+            // Judgements grouped by topic keeping the order they were added, the id in the highest bits
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = ((long) topics[i] << 32) | i;
+            }
+            Arrays.sort(keys);
+            int numTopics = 0;
+            for (int k = 0; k < size; k++) {
+                if (k == 0 || (int) (keys[k] >> 32) != (int) (keys[k - 1] >> 32)) {
+                    numTopics++;
+                }
+            }
+
+            int[] retvalTopics = new int[numTopics];
+            InfoNeedJudgements[] retval = new InfoNeedJudgements[numTopics];
+            long[] documentKeys = new long[size];
+            int t = 0;
+            for (int start = 0, end; start < size; start = end) {
+                int topic = (int) (keys[start] >> 32);
+                end = start;
+                while (end < size && (int) (keys[end] >> 32) == topic) {
+                    int i = (int) keys[end];
+                    documentKeys[end - start] = ((long) documents[i] << 32) | i;
+                    end++;
+                }
+                // Sorted by document and order, the last judgement of a document is the one kept
+                int count = end - start;
+                Arrays.sort(documentKeys, 0, count);
+                int[] docs = new int[count];
+                byte[] grades = new byte[count];
+                int n = 0;
+                for (int k = 0; k < count; k++) {
+                    int document = (int) (documentKeys[k] >> 32);
+                    if (n > 0 && docs[n - 1] == document) {
+                        n--;
+                    }
+                    docs[n] = document;
+                    grades[n] = relevances[(int) documentKeys[k]];
+                    n++;
+                }
+                retvalTopics[t] = topic;
+                retval[t++] = new InfoNeedJudgements(Integer.toString(topic), Arrays.copyOf(docs, n),
+                        Arrays.copyOf(grades, n));
+            }
+            return new Qrels(retvalTopics, retval);
+        }
+    }
+
+    /**
+     * @param topic Id of the topic.
+     * @return The judgements of the topic, without judgements if the topic has none.
+     */
+    InfoNeedJudgements getJudgements(int topic) {
+        int t = Arrays.binarySearch(topics, topic);
+        return t >= 0 ? judgements[t] : EMPTY;
+    }
+
+    /**
+     * @return The ids of the topics with judgements, sorted.
+     */
+    public int[] getTopics() {
+        return topics.clone();
+    }
+
+    /**
+     * @param topic Id of the topic.
+     * @return The number of relevant documents of the topic.
+     */
+    public int getNumRelevant(int topic) {
+        return getJudgements(topic).getNumRelevant();
+    }
+
+    /**
+     * @param topic Id of the topic.
+     * @return The number of judged documents of the topic.
+     */
+    public int getNumJudged(int topic) {
+        return getJudgements(topic).getNumJudged();
+    }
+
+    /**
+     * @return Approximate number of bytes used by the judgements.
+     */
+    public long getMemoryFootprint() {
+        long retval = 32 + 8L * topics.length;
+        for (InfoNeedJudgements infoNeedJudgements : judgements) {
+            retval += infoNeedJudgements.getMemoryFootprint();
+        }
+        return retval;
+    }
+}
@@ -0,0 +1,179 @@
+package com.recinfo;
+
+import com.recinfo.collection.InfoNeedJudgements;
+import com.recinfo.metrics.MetricEngine;
+import com.recinfo.metrics.RankingSweep;
+
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates rankings given as arrays of document ids, without files, to be called from training and tuning loops.
+ * Every measure is computed in a single walk of the ranking, keeping only running counts in local variables, and the
+ * results are written to an array of the caller, so an evaluation does not allocate memory. The measures give the same
+ * values than the ones of the evaluation of the files.
+ * The evaluator only keeps its measures and the judgements, which can not be modified, so the same instance can be
+ * used from several threads at the same time.
+ */
+public class RankingEvaluator {
+    private final Qrels qrels;
+    private final Measure[] measures;
+    // Positions of the measures with a cutoff, sorted by cutoff
+    private final int[] cutoffOrder;
+    private final int maxCutoff;
+    private final boolean wholeRanking;
+
+    /**
+     * @param qrels Judgements of the topics.
+     * @param measures Measures computed, in the order they are written in the results.
+     */
+    public RankingEvaluator(Qrels qrels, Measure... measures) {
+        if (measures.length == 0) {
+            throw new IllegalArgumentException("At least a measure is needed");
+        }
+        this.qrels = qrels;
+        this.measures = measures.clone();
+        this.cutoffOrder = IntStream.range(0, measures.length)
+                .filter(m -> measures[m].getCutoff() > 0)
+                .boxed()
+                .sorted((a, b) -> Integer.compare(measures[a].getCutoff(), measures[b].getCutoff()))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        this.maxCutoff = cutoffOrder.length > 0 ? measures[cutoffOrder[cutoffOrder.length - 1]].getCutoff() : 0;
+        this.wholeRanking = cutoffOrder.length < measures.length;
+    }
+
+    /**
+     * @return The measures computed, in the order they are written in the results.
+     */
+    public Measure[] getMeasures() {
+        return measures.clone();
+    }
+
+    /**
+     * @return The number of values written by every evaluation.
+     */
+    public int size() {
+        return measures.length;
+    }
+
+    /**
+     * Evaluates a whole ranking.
+     * @param topic Id of the topic of the ranking.
+     * @param ranking Ids of the documents recovered in the topic, in order.
+     * @param results Array where the value of every measure is written, from position 0.
+     */
+    public void evaluate(int topic, int[] ranking, double[] results) {
+        evaluate(topic, ranking, ranking.length, results, 0);
+    }
+
+    /**
+     * Evaluates the first documents of a ranking, so the same array can be reused for rankings of any length.
+     * Measures which are not defined for the ranking, like the recall of a topic without relevant documents, are not a
+     * number, like in the evaluation of the files.
+     * @param topic Id of the topic of the ranking.
+     * @param ranking Ids of the documents recovered in the topic, in order.
+     * @param length Number of documents of the ranking.
+     * @param results Array where the value of every measure is written.
+     * @param offset Position of the results where the value of the first measure is written, the others follow it in
+     *               the order of {@link #getMeasures()}.
+     */
+    public void evaluate(int topic, int[] ranking, int length, double[] results, int offset) {
+        InfoNeedJudgements judgements = qrels.getJudgements(topic);
+        int numRelevant = judgements.getNumRelevant();
+        int last = wholeRanking ? length : Math.min(length, maxCutoff);
+        int relevantRetrieved = 0;
+        float precisionSum = 0;
+        double gain = 0;
+        int c = 0;
+        // Running values of the judged documents, for the measures which skip the unjudged ones
+        int judgedAbove = 0;
+        int relevantAbove = 0;
+        int nonRelevantAbove = 0;
+        int bound = Math.min(numRelevant, judgements.getNumJudged() - numRelevant);
+        double bpref = 0;
+        double inferred = 0;
+        double condensed = 0;
+        for (int rank = 1; rank <= last; rank++) {
+            int relevance = judgements.getRelevance(ranking[rank - 1], RankingSweep.UNJUDGED);
+            if (relevance != RankingSweep.UNJUDGED) {
+                if (InfoNeedJudgements.isRelevantGrade(relevance)) {
+                    relevantRetrieved++;
+                    precisionSum += ((float) relevantRetrieved) / rank;
+                    bpref += MetricEngine.bprefOfRelevant(nonRelevantAbove, numRelevant, bound);
+                    inferred += MetricEngine.inferredPrecisionOfRelevant(rank, relevantAbove, nonRelevantAbove);
+                    condensed += MetricEngine.condensedPrecisionOfRelevant(relevantAbove, judgedAbove);
+                    relevantAbove++;
+                } else {
+                    nonRelevantAbove++;
+                }
+                if (relevance > 0) {
+                    gain += relevance * InfoNeedJudgements.discount(rank);
+                }
+                judgedAbove++;
+            }
+            for (; c < cutoffOrder.length && measures[cutoffOrder[c]].getCutoff() == rank; c++) {
+                results[offset + cutoffOrder[c]] = cutoffValue(measures[cutoffOrder[c]], judgements,
+                        relevantRetrieved, precisionSum, gain);
+            }
+        }
+        // Cutoffs beyond the end of the ranking see the whole ranking
+        for (; c < cutoffOrder.length; c++) {
+            results[offset + cutoffOrder[c]] = cutoffValue(measures[cutoffOrder[c]], judgements, relevantRetrieved,
+                    precisionSum, gain);
+        }
+        if (!wholeRanking) {
+            return;
+        }
+
+        float precision = (float) relevantRetrieved / length;
+        float recall = (float) relevantRetrieved / numRelevant;
+        for (int m = 0; m < measures.length; m++) {
+            float value;
+            switch (measures[m].getType()) {
+                case PRECISION:
+                    value = precision;
+                    break;
+                case RECALL:
+                    value = recall;
+                    break;
+                case F1_SCORE:
+                    value = (2 * precision * recall) / (precision + recall);
+                    break;
+                case UNJUDGED:
+                    value = length == 0 ? 0 : (float) (length - judgedAbove) / length;
+                    break;
+                case BPREF:
+                    value = numRelevant == 0 ? 0 : (float) (bpref / numRelevant);
+                    break;
+                case INFAP:
+                    value = numRelevant == 0 ? 0 : (float) (inferred / numRelevant);
+                    break;
+                case CONDENSED_AP:
+                    value = numRelevant == 0 ? 0 : (float) (condensed / numRelevant);
+                    break;
+                default:
+                    continue;
+            }
+            results[offset + m] = value;
+        }
+    }
+
+    /**
+     * @return The value of a measure with a cutoff from the running values at the cutoff.
+     */
+    private static float cutoffValue(Measure measure, InfoNeedJudgements judgements, int relevantRetrieved,
+                                     float precisionSum, double gain) {
+        int k = measure.getCutoff();
+        switch (measure.getType()) {
+            case PRECISION_AT:
+                return (float) relevantRetrieved / k;
+            case RECALL_AT:
+                return (float) relevantRetrieved / judgements.getNumRelevant();
+            case AVERAGE_PRECISION_AT:
+                return precisionSum / relevantRetrieved;
+            default:
+                double ideal = judgements.getIdealDcg(k);
+                return ideal == 0 ? 0 : (float) (gain / ideal);
+        }
+    }
+}
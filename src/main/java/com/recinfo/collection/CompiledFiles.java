@@ -0,0 +1,293 @@
+package com.recinfo.collection;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compiles judgements and recovered documents files into a binary format which is loaded without parsing the text.
+ * A compiled file contains the dictionary of documents with the hashes of its strings, so they are not hashed again,
+ * and the documents of every information need as delta encoded ints. It also keeps the size, modification date and
+ * CRC32 of the source file, when the source file still exists it is checked before the compiled file is used.
+ * {@link Judgements} and {@link RecoveredDocuments} detect compiled files by their first bytes.
+ */
+public final class CompiledFiles {
+    private static final byte[] MAGIC = {'R', 'E', 'C', 'I', 'N', 'F', 'O', 1};
+    static final int JUDGEMENTS = 1;
+    static final int RECOVERED_DOCUMENTS = 2;
+
+    private CompiledFiles() {
+    }
+
+    /**
+     * @param path Path of a file.
+     * @return true if the file is a compiled file.
+     * @throws IOException If the file can not be read.
+     */
+    public static boolean isCompiled(String path) throws IOException {
+        try (InputStream in = new FileInputStream(path)) {
+            byte[] start = new byte[MAGIC.length];
+            int read = in.readNBytes(start, 0, start.length);
+            return read == MAGIC.length && Arrays.equals(start, MAGIC);
+        }
+    }
+
+    /**
+     * Compiles a judgements file. Nothing is written if the source can not be read or one of its lines is malformed.
+     * @param source Path of the judgements file.
+     * @param target Path of the compiled file.
+     * @throws IOException If a file can not be read or written, or the source is malformed.
+     */
+    public static void compileJudgements(String source, String target) throws IOException {
+        Judgements judgements;
+        try {
+            judgements = new Judgements(source);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Path temporary = temporary(target);
+        try (DataOutputStream out = open(source, temporary, JUDGEMENTS)) {
+            judgements.getDocuments().write(out);
+            out.writeInt(judgements.getInfoNeeds().size());
+            for (String infoNeed : judgements.getInfoNeeds()) {
+                InfoNeedJudgements infoNeedJudgements = judgements.getJudgementsByInfoNeed(infoNeed);
+                int n = infoNeedJudgements.getNumJudged();
+                ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+                int previous = 0;
+                for (int i = 0; i < n; i++) {
+                    writeVarInt(encoded, infoNeedJudgements.getDocument(i) - previous);
+                    previous = infoNeedJudgements.getDocument(i);
+                }
+                for (int i = 0; i < n; i++) {
+                    writeVarInt(encoded, zigZag(infoNeedJudgements.getRelevanceAt(i)));
+                }
+                writeString(out, infoNeed);
+                out.writeInt(n);
+                out.writeInt(encoded.size());
+                encoded.writeTo(out);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        replace(temporary, target);
+    }
+
+    /**
+     * Compiles a recovered documents file. Nothing is written if the source can not be read or one of its lines is
+     * malformed.
+     * @param source Path of the recovered documents file.
+     * @param target Path of the compiled file.
+     * @throws IOException If a file can not be read or written, or the source is malformed.
+     */
+    public static void compileRecoveredDocuments(String source, String target) throws IOException {
+        RecoveredDocuments documents;
+        try {
+            documents = new RecoveredDocuments(source, new IdDictionary());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Path temporary = temporary(target);
+        try (DataOutputStream out = open(source, temporary, RECOVERED_DOCUMENTS)) {
+            documents.getDocuments().write(out);
+            out.writeInt(documents.getInfoNeeds().size());
+            for (String infoNeed : documents.getInfoNeeds()) {
+                int[] ranking = documents.getDocumentsByInfoNeed(infoNeed);
+                ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+                int previous = 0;
+                for (int document : ranking) {
+                    writeVarInt(encoded, zigZag(document - previous));
+                    previous = document;
+                }
+                writeString(out, infoNeed);
+                out.writeInt(ranking.length);
+                out.writeInt(encoded.size());
+                encoded.writeTo(out);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        replace(temporary, target);
+    }
+
+    /**
+     * @param target Path of a compiled file.
+     * @return The path where the compiled file is written before it is complete.
+     */
+    private static Path temporary(String target) {
+        Path path = Paths.get(target).toAbsolutePath();
+        return path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    /**
+     * Renames a complete compiled file to its path, so an interrupted or failed compilation never leaves a compiled
+     * file with part of the source.
+     */
+    private static void replace(Path temporary, String target) throws IOException {
+        Files.move(temporary, Paths.get(target), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Creates a compiled file and writes its header.
+     */
+    private static DataOutputStream open(String source, Path target, int kind) throws IOException {
+        Path sourcePath = Paths.get(source).toAbsolutePath();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target)));
+        out.write(MAGIC);
+        out.writeInt(kind);
+        out.writeLong(Files.size(sourcePath));
+        out.writeLong(Files.getLastModifiedTime(sourcePath).toMillis());
+        out.writeLong(checksum(sourcePath));
+        writeString(out, sourcePath.toString());
+        return out;
+    }
+
+    /**
+     * Maps a compiled file and checks its header against the source file.
+     * @param path Path of the compiled file.
+     * @param kind Kind of file expected.
+     * @return The buffer positioned after the header.
+     * @throws IOException If the file is not of the expected kind or its source file has changed.
+     */
+    static ByteBuffer map(String path, int kind) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        in.position(MAGIC.length);
+        if (in.getInt() != kind) {
+            throw new IOException(path + " is not a compiled " + (kind == JUDGEMENTS ? "judgements" : "recovered documents")
+                    + " file");
+        }
+        long size = in.getLong();
+        long modified = in.getLong();
+        long checksum = in.getLong();
+        Path source = Paths.get(readString(in));
+        if (Files.exists(source)
+                && (Files.size(source) != size || Files.getLastModifiedTime(source).toMillis() != modified)
+                && checksum(source) != checksum) {
+            throw new IOException(path + " is out of date, " + source + " has changed since it was compiled");
+        }
+        return in;
+    }
+
+    /**
+     * Reads the judgements of a compiled file.
+     * @param in Buffer positioned after the dictionary.
+     * @return A map with the information need and its judgements.
+     */
+    static Map<String, InfoNeedJudgements> readJudgements(ByteBuffer in) {
+        Map<String, InfoNeedJudgements> retval = new LinkedHashMap<>();
+        int infoNeeds = in.getInt();
+        for (int t = 0; t < infoNeeds; t++) {
+            String infoNeed = readString(in);
+            int n = in.getInt();
+            in.getInt();
+            int[] documents = new int[n];
+            byte[] relevances = new byte[n];
+            int previous = 0;
+            for (int i = 0; i < n; i++) {
+                previous += readVarInt(in);
+                documents[i] = previous;
+            }
+            for (int i = 0; i < n; i++) {
+                relevances[i] = (byte) unZigZag(readVarInt(in));
+            }
+            retval.put(infoNeed, new InfoNeedJudgements(infoNeed, documents, relevances));
+        }
+        return retval;
+    }
+
+    /**
+     * Reads the rankings of a compiled file.
+     * @param in Buffer positioned at the dictionary.
+     * @param documents Dictionary where the documents are interned, the ids of the compiled file are translated to it.
+     * @return A map with the information need and its ranking of document ids.
+     */
+    static Map<String, int[]> readRecoveredDocuments(ByteBuffer in, IdDictionary documents) {
+        IdDictionary compiled = IdDictionary.read(in);
+        int[] translation = new int[compiled.size()];
+        for (int i = 0; i < translation.length; i++) {
+            translation[i] = documents.intern(compiled.get(i));
+        }
+
+        Map<String, int[]> retval = new LinkedHashMap<>();
+        int infoNeeds = in.getInt();
+        for (int t = 0; t < infoNeeds; t++) {
+            String infoNeed = readString(in);
+            int[] ranking = new int[in.getInt()];
+            in.getInt();
+            int previous = 0;
+            for (int i = 0; i < ranking.length; i++) {
+                previous += unZigZag(readVarInt(in));
+                ranking[i] = translation[previous];
+            }
+            retval.put(infoNeed, ranking);
+        }
+        return retval;
+    }
+
+    private static long checksum(Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] b = new byte[in.getInt()];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,107 @@
+package com.recinfo.collection;
+
+import java.util.Arrays;
+
+/**
+ * Map from document ids to a score and the number of times it has been added, with open addressing, used to fuse the
+ * rankings of an information need without boxing. The documents are kept in the order they are first added.
+ */
+class DocumentScores {
+    private static final int EMPTY = -1;
+
+    private int[] table;
+    private int[] documents;
+    private double[] scores;
+    private int[] hits;
+    private int size;
+
+    /**
+     * @param expected Number of documents expected, the map grows if there are more.
+     */
+    DocumentScores(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) * 2;
+        table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        documents = new int[capacity / 2];
+        scores = new double[capacity / 2];
+        hits = new int[capacity / 2];
+    }
+
+    /**
+     * Adds a score to a document.
+     * @param document Id of the document.
+     * @param score Score added to the score of the document.
+     */
+    void add(int document, double score) {
+        int mask = table.length - 1;
+        int slot = mix(document) & mask;
+        while (table[slot] != EMPTY) {
+            int i = table[slot];
+            if (documents[i] == document) {
+                scores[i] += score;
+                hits[i]++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == documents.length) {
+            documents = Arrays.copyOf(documents, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+            hits = Arrays.copyOf(hits, size * 2);
+        }
+        documents[size] = document;
+        scores[size] = score;
+        hits[size] = 1;
+        table[slot] = size;
+        size++;
+        if (size * 2 > table.length) {
+            rehash();
+        }
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        Arrays.fill(table, EMPTY);
+        int mask = table.length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = mix(documents[i]) & mask;
+            while (table[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i;
+        }
+    }
+
+    private static int mix(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param i Position of the document, in the order they were added.
+     * @return The id of the document.
+     */
+    int getDocument(int i) {
+        return documents[i];
+    }
+
+    /**
+     * @param i Position of the document, in the order they were added.
+     * @return The sum of the scores added to the document.
+     */
+    double getScore(int i) {
+        return scores[i];
+    }
+
+    /**
+     * @param i Position of the document, in the order they were added.
+     * @return The number of scores added to the document.
+     */
+    int getHits(int i) {
+        return hits[i];
+    }
+}
@@ -0,0 +1,294 @@
+package com.recinfo.collection;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Dictionary which assigns a consecutive int id to every different string (document or information need ids).
+ * The strings are stored as UTF-8 bytes in a single array and they can be interned directly from the bytes of a file,
+ * so no String is created while a file is read.
+ * A dictionary can extend another one which is not modified anymore: the strings of the parent keep their ids and the
+ * new strings get the next ones. Reading a dictionary from several threads is safe while nobody interns strings.
+ */
+public class IdDictionary {
+    private static final int EMPTY = -1;
+
+    private final IdDictionary parent;
+    private final int parentSize;
+    private byte[] bytes;
+    private int[] offsets;
+    private int[] hashes;
+    private int[] table;
+    private int size;
+    private int usedBytes;
+
+    public IdDictionary() {
+        this(null);
+    }
+
+    /**
+     * @param parent Dictionary whose strings keep their ids, it must not be modified after this call.
+     */
+    public IdDictionary(IdDictionary parent) {
+        this.parent = parent;
+        this.parentSize = parent == null ? 0 : parent.size();
+        clear();
+    }
+
+    /**
+     * Writes the strings, their hashes and the hash table of the dictionary, so it can be read again without hashing the
+     * strings.
+     * @param out Output where the dictionary is written.
+     * @throws IOException If the dictionary can not be written.
+     */
+    void write(DataOutputStream out) throws IOException {
+        if (parent != null) {
+            throw new IllegalStateException("Only dictionaries without parent can be written");
+        }
+        out.writeInt(size);
+        out.writeInt(usedBytes);
+        out.writeInt(table.length);
+        out.write(bytes, 0, usedBytes);
+        for (int i = 0; i <= size; i++) {
+            out.writeInt(offsets[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            out.writeInt(hashes[i]);
+        }
+        for (int slot : table) {
+            out.writeInt(slot);
+        }
+    }
+
+    /**
+     * Reads a dictionary written with {@link #write(DataOutputStream)}.
+     * @param in Buffer positioned at the start of the dictionary, it is left after its end.
+     * @return The dictionary.
+     */
+    static IdDictionary read(ByteBuffer in) {
+        IdDictionary retval = new IdDictionary();
+        retval.size = in.getInt();
+        retval.usedBytes = in.getInt();
+        int tableLength = in.getInt();
+        retval.bytes = new byte[Math.max(retval.usedBytes, 1)];
+        in.get(retval.bytes, 0, retval.usedBytes);
+        retval.offsets = new int[retval.size + 2];
+        retval.hashes = new int[retval.size + 1];
+        IntBuffer ints = in.asIntBuffer();
+        ints.get(retval.offsets, 0, retval.size + 1);
+        ints.get(retval.hashes, 0, retval.size);
+        in.position(in.position() + 4 * (2 * retval.size + 1 + tableLength));
+        // The table is built again from the hashes, so it does not depend on how older versions placed the slots
+        retval.table = new int[tableLength];
+        retval.fillTable();
+        return retval;
+    }
+
+    /**
+     * Removes every string interned in this dictionary, the strings of the parent are kept.
+     */
+    public void clear() {
+        this.bytes = new byte[1024];
+        this.offsets = new int[65];
+        this.hashes = new int[64];
+        this.table = new int[128];
+        Arrays.fill(table, EMPTY);
+        this.size = 0;
+        this.usedBytes = 0;
+    }
+
+    /**
+     * @return Number of strings of the dictionary, including the ones of the parent.
+     */
+    public int size() {
+        return parentSize + size;
+    }
+
+    /**
+     * @return Bytes used by the strings and the hash table of this dictionary, without the parent.
+     */
+    public long getMemoryFootprint() {
+        return bytes.length + 4L * (offsets.length + hashes.length + table.length);
+    }
+
+    /**
+     * Releases the unused capacity of the strings, which grow by doubling while they are interned. Call it when no
+     * more strings are expected, the dictionary grows again if more strings are interned.
+     */
+    public void trimToSize() {
+        bytes = Arrays.copyOf(bytes, Math.max(usedBytes, 1));
+        hashes = Arrays.copyOf(hashes, Math.max(size, 1));
+        offsets = Arrays.copyOf(offsets, hashes.length + 1);
+    }
+
+    /**
+     * Get the id of a string, adding it to the dictionary if it is new.
+     * @param s String to intern.
+     * @return The id of the string.
+     */
+    public int intern(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        return intern(ByteBuffer.wrap(b), 0, b.length);
+    }
+
+    /**
+     * Get the id of a string stored as UTF-8 bytes, adding it to the dictionary if it is new.
+     * @param buffer Buffer which contains the string.
+     * @param offset Position of the first byte of the string.
+     * @param length Number of bytes of the string.
+     * @return The id of the string.
+     */
+    public int intern(ByteBuffer buffer, int offset, int length) {
+        int hash = hash(buffer, offset, length);
+        if (parent != null) {
+            int id = parent.find(buffer, offset, length, hash);
+            if (id != EMPTY) {
+                return id;
+            }
+        }
+        int slot = slot(buffer, offset, length, hash);
+        if (table[slot] != EMPTY) {
+            return parentSize + table[slot];
+        }
+
+        if (usedBytes + length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, usedBytes + length));
+        }
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, hashes.length * 2);
+            offsets = Arrays.copyOf(offsets, hashes.length + 1);
+        }
+        for (int i = 0; i < length; i++) {
+            bytes[usedBytes + i] = buffer.get(offset + i);
+        }
+        usedBytes += length;
+        hashes[size] = hash;
+        offsets[size + 1] = usedBytes;
+        table[slot] = size;
+        size++;
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return parentSize + size - 1;
+    }
+
+    /**
+     * Get the id of a string without adding it.
+     * @param s String to find.
+     * @return The id of the string, -1 if it is not in the dictionary.
+     */
+    public int get(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(b);
+        return find(buffer, 0, b.length, hash(buffer, 0, b.length));
+    }
+
+    /**
+     * @param id Id of a string of the dictionary.
+     * @return The string with the id.
+     */
+    public String get(int id) {
+        if (id < parentSize) {
+            return parent.get(id);
+        }
+        int local = id - parentSize;
+        return new String(bytes, offsets[local], offsets[local + 1] - offsets[local], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares two strings of the dictionary by their UTF-8 bytes, like strcmp does.
+     * @param a Id of a string of the dictionary.
+     * @param b Id of another string of the dictionary.
+     * @return A negative number, zero or a positive number if the first string is lower, equal or greater.
+     */
+    int compare(int a, int b) {
+        IdDictionary first = owner(a);
+        IdDictionary second = owner(b);
+        int i = a - first.parentSize;
+        int j = b - second.parentSize;
+        return Arrays.compareUnsigned(first.bytes, first.offsets[i], first.offsets[i + 1],
+                second.bytes, second.offsets[j], second.offsets[j + 1]);
+    }
+
+    /**
+     * @param id Id of a string of the dictionary.
+     * @return The dictionary, this one or a parent, where the string is stored.
+     */
+    private IdDictionary owner(int id) {
+        return id < parentSize ? parent.owner(id) : this;
+    }
+
+    private int find(ByteBuffer buffer, int offset, int length, int hash) {
+        if (parent != null) {
+            int id = parent.find(buffer, offset, length, hash);
+            if (id != EMPTY) {
+                return id;
+            }
+        }
+        int local = table[slot(buffer, offset, length, hash)];
+        return local == EMPTY ? EMPTY : parentSize + local;
+    }
+
+    /**
+     * @return The slot of the table which contains the string or the empty slot where it must be added.
+     */
+    private int slot(ByteBuffer buffer, int offset, int length, int hash) {
+        int mask = table.length - 1;
+        int slot = spread(hash) & mask;
+        while (table[slot] != EMPTY && !equals(table[slot], hash, buffer, offset, length)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean equals(int local, int hash, ByteBuffer buffer, int offset, int length) {
+        int start = offsets[local];
+        if (hashes[local] != hash || offsets[local + 1] - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[start + i] != buffer.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        fillTable();
+    }
+
+    private void fillTable() {
+        Arrays.fill(table, EMPTY);
+        int mask = table.length - 1;
+        for (int local = 0; local < size; local++) {
+            int slot = spread(hashes[local]) & mask;
+            while (table[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = local;
+        }
+    }
+
+    /**
+     * Spreads the bits of a hash over the slots of the table. Ids like numbers have consecutive hashes, which would be
+     * placed in consecutive slots and make long runs of the linear probing.
+     */
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(ByteBuffer buffer, int offset, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + buffer.get(offset + i);
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,261 @@
+package com.recinfo.collection;
+
+import java.util.Arrays;
+
+/**
+ * Class who keeps the judgements of a single information need.
+ * The judged documents are kept as a sorted array of document ids with their relevance in a parallel array of bytes,
+ * so a document is found with a binary search and every judgement takes 5 bytes. The ideal ranking is kept as the
+ * number of documents of every positive relevance, which is enough to compute its discounted cumulative gain.
+ * It is built once when the judgements are loaded and it can not be modified, so it can be shared between threads.
+ */
+public class InfoNeedJudgements {
+    private static volatile double[] cumulativeDiscount = {0};
+
+    private final String idInformationNeed;
+    private final int[] documents;
+    private final byte[] relevances;
+    private final int numRelevant;
+    private final int numGain;
+    private final byte[] idealRelevances;
+    private final int[] idealCounts;
+
+    /**
+     * @param idInformationNeed Information need of the judgements.
+     * @param documents Ids of the judged documents, sorted and without repetitions. The array is kept, not copied.
+     * @param relevances Relevance of every judged document. The array is kept, not copied.
+     */
+    public InfoNeedJudgements(String idInformationNeed, int[] documents, byte[] relevances) {
+        this.idInformationNeed = idInformationNeed;
+        this.documents = documents;
+        this.relevances = relevances;
+        int cont = 0;
+        int[] histogram = new int[Byte.MAX_VALUE + 1];
+        for (byte relevance : relevances) {
+            if (isRelevantGrade(relevance)) {
+                cont++;
+            }
+            if (relevance > 0) {
+                histogram[relevance]++;
+            }
+        }
+        this.numRelevant = cont;
+
+        // Ideal ranking: the number of documents of every positive relevance, from the highest to the lowest
+        int grades = 0;
+        int gain = 0;
+        for (int relevance = Byte.MAX_VALUE; relevance > 0; relevance--) {
+            if (histogram[relevance] > 0) {
+                grades++;
+                gain += histogram[relevance];
+            }
+        }
+        this.numGain = gain;
+        this.idealRelevances = new byte[grades];
+        this.idealCounts = new int[grades];
+        int g = 0;
+        for (int relevance = Byte.MAX_VALUE; relevance > 0; relevance--) {
+            if (histogram[relevance] > 0) {
+                idealRelevances[g] = (byte) relevance;
+                idealCounts[g++] = histogram[relevance];
+            }
+        }
+        cumulativeDiscount(gain);
+    }
+
+    /**
+     * @param relevance Relevance written in the judgements file.
+     * @return true if the relevance can be kept in the judgements, which use a byte per relevance.
+     */
+    public static boolean isValidGrade(int relevance) {
+        return relevance >= Byte.MIN_VALUE && relevance <= Byte.MAX_VALUE;
+    }
+
+    /**
+     * Get the sums of the discounts of the first ranks, shared by every information need. The table grows when an
+     * information need has more documents with gain than the ones already computed.
+     * @param n Number of ranks needed.
+     * @return A table whose position k is the sum of the discounts of the ranks from 1 to k, with at least n + 1
+     *         positions.
+     */
+    private static double[] cumulativeDiscount(int n) {
+        double[] table = cumulativeDiscount;
+        if (n < table.length) {
+            return table;
+        }
+        synchronized (InfoNeedJudgements.class) {
+            table = cumulativeDiscount;
+            if (n >= table.length) {
+                int previous = table.length;
+                table = Arrays.copyOf(table, Math.max(n + 1, previous * 2));
+                for (int rank = previous; rank < table.length; rank++) {
+                    table[rank] = table[rank - 1] + discount(rank);
+                }
+                cumulativeDiscount = table;
+            }
+            return table;
+        }
+    }
+
+    /**
+     * @param rank Position in a ranking, starting in 1.
+     * @return Discount of the gain of a document in the position for the discounted cumulative gain.
+     */
+    public static double discount(int rank) {
+        return 1 / (Math.log(rank + 1) / Math.log(2));
+    }
+
+    /**
+     * @param relevance Relevance written in the judgements file.
+     * @return true if the relevance means that the document is relevant, like in trec_eval every positive relevance is
+     *         relevant for the binary measures, the same documents which have gain in the graded measures.
+     */
+    public static boolean isRelevantGrade(int relevance) {
+        return relevance > 0;
+    }
+
+    public String getIdInformationNeed() {
+        return idInformationNeed;
+    }
+
+    /**
+     * @return The number of relevant documents of the information need.
+     */
+    public int getNumRelevant() {
+        return numRelevant;
+    }
+
+    /**
+     * @return The highest relevance of the judgements, 0 if no document has a positive relevance.
+     */
+    public int getMaxRelevance() {
+        return idealRelevances.length > 0 ? idealRelevances[0] : 0;
+    }
+
+    /**
+     * Get the discounted cumulative gain of the ideal ranking, the judged documents sorted by relevance. The gain of a
+     * document is its relevance, documents with a relevance lower than 1 have no gain.
+     * The documents of every relevance are counted when the judgements are loaded, so it is not sorted again for
+     * every ranking and it is computed with a difference of the cumulative discounts for every relevance.
+     * @param k Number of documents of the ideal ranking.
+     * @return The discounted cumulative gain of the first k documents of the ideal ranking.
+     */
+    public double getIdealDcg(int k) {
+        double[] table = cumulativeDiscount;
+        int remaining = Math.min(k, numGain);
+        int rank = 0;
+        double retval = 0;
+        for (int g = 0; g < idealCounts.length && remaining > 0; g++) {
+            int count = Math.min(idealCounts[g], remaining);
+            retval += idealRelevances[g] * (table[rank + count] - table[rank]);
+            rank += count;
+            remaining -= count;
+        }
+        return retval;
+    }
+
+    /**
+     * @return Approximate number of bytes used by the judgements.
+     */
+    public long getMemoryFootprint() {
+        return 96 + 4L * documents.length + relevances.length + 5L * idealRelevances.length;
+    }
+
+    /**
+     * @return The number of judged documents of the information need.
+     */
+    public int getNumJudged() {
+        return documents.length;
+    }
+
+    /**
+     * @param document Id of the document in the dictionary of the judgements.
+     * @return true if the document is judged as relevant.
+     */
+    public boolean isRelevant(int document) {
+        int i = indexOf(document);
+        return i >= 0 && isRelevantGrade(relevances[i]);
+    }
+
+    /**
+     * @param document Id of the document in the dictionary of the judgements.
+     * @return true if the document has a judgement in the information need.
+     */
+    public boolean isJudged(int document) {
+        return indexOf(document) >= 0;
+    }
+
+    /**
+     * Get the graded relevance of a document.
+     * @param document Id of the document in the dictionary of the judgements.
+     * @param defaultValue Value returned when the document is not judged.
+     * @return The relevance of the document written in the judgements file.
+     */
+    public int getRelevance(int document, int defaultValue) {
+        int i = indexOf(document);
+        return i >= 0 ? relevances[i] : defaultValue;
+    }
+
+    /**
+     * Get the judgements kept in a sample, like the ones of a smaller pool. Only the judgements of the sample are
+     * copied, so the samples of the judgements can be kept as bits.
+     * @param kept Bits of the positions of the judgements in the sample, bit i of word i / 64 for the position i.
+     * @return The judgements of the positions whose bit is set.
+     */
+    public InfoNeedJudgements subset(long[] kept) {
+        int n = 0;
+        for (long word : kept) {
+            n += Long.bitCount(word);
+        }
+        int[] keptDocuments = new int[n];
+        byte[] keptRelevances = new byte[n];
+        int k = 0;
+        for (int w = 0; w < kept.length; w++) {
+            for (long word = kept[w]; word != 0; word &= word - 1) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                keptDocuments[k] = documents[i];
+                keptRelevances[k] = relevances[i];
+                k++;
+            }
+        }
+        return new InfoNeedJudgements(idInformationNeed, keptDocuments, keptRelevances);
+    }
+
+    /**
+     * @param document Id of the document in the dictionary of the judgements.
+     * @return The position of the judgement of the document, a negative number if the document is not judged.
+     */
+    public int getPosition(int document) {
+        return indexOf(document);
+    }
+
+    /**
+     * The documents which are only in a run get ids greater than the judged ones, so most of the documents of a
+     * ranking are discarded without the binary search.
+     * @param document Id of the document in the dictionary of the judgements.
+     * @return The position of the document in the judgements, a negative number if it is not judged.
+     */
+    private int indexOf(int document) {
+        int n = documents.length;
+        if (n == 0 || document > documents[n - 1] || document < documents[0]) {
+            return -1;
+        }
+        return Arrays.binarySearch(documents, document);
+    }
+
+    /**
+     * @param i Position of the judgement, between 0 and {@link #getNumJudged()}.
+     * @return The id of the judged document in the position, the documents are sorted by id.
+     */
+    public int getDocument(int i) {
+        return documents[i];
+    }
+
+    /**
+     * @param i Position of the judgement, between 0 and {@link #getNumJudged()}.
+     * @return The relevance of the judged document in the position.
+     */
+    public int getRelevanceAt(int i) {
+        return relevances[i];
+    }
+}
@@ -1,84 +1,211 @@
 package com.recinfo.collection;
 
+import com.recinfo.profile.Profiler;
+
 import java.io.*;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.*;
 
 /**
  * Class who provides an API to manage the access to a concrete collection of judgements relative to a information need
+ * The judgements are partitioned by information need when the file is loaded and they are not modified later,
+ * so the same instance can be shared between threads.
+ * The documents are identified by the id assigned in {@link #getDocuments()}.
+ * The file can have three tab separated columns, the information need, the document and its relevance, or it can be in
+ * the TREC format (qid iteration docno relevance). The relevance can be graded, like in the TREC qrels, and every
+ * positive relevance is relevant for the binary measures.
  */
 public class Judgements {
-    LinkedHashMap<String, Judgement> judgements;
+    private static final InfoNeedJudgements EMPTY = new InfoNeedJudgements(null, new int[0], new byte[0]);
+
+    private final IdDictionary documents;
+    private final Map<String, InfoNeedJudgements> judgements;
 
+    /**
+     * @param relevancePath Path of the judgements file, it can be a file compiled with {@link CompiledFiles}.
+     * @throws UncheckedIOException If the file can not be read or one of its lines is malformed, the judgements are
+     *                              never loaded partially.
+     */
     public Judgements(String relevancePath) {
-        this.judgements = loadJudgements(relevancePath);;
+        IdDictionary documents = new IdDictionary();
+        Map<String, InfoNeedJudgements> judgements;
+        try {
+            if (CompiledFiles.isCompiled(relevancePath)) {
+                Profiler.Timer timer = Profiler.start("read compiled qrels");
+                ByteBuffer in = CompiledFiles.map(relevancePath, CompiledFiles.JUDGEMENTS);
+                documents = IdDictionary.read(in);
+                judgements = Collections.unmodifiableMap(CompiledFiles.readJudgements(in));
+                timer.stop(judgements.size());
+            } else {
+                judgements = loadJudgements(relevancePath, documents);
+                documents.trimToSize();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.documents = documents;
+        this.judgements = judgements;
+        if (Profiler.isEnabled()) {
+            Profiler.recordMemory("qrels", getMemoryFootprint() - documents.getMemoryFootprint(), getNumJudgements());
+            Profiler.recordMemory("qrels documents", documents.getMemoryFootprint(), documents.size());
+        }
     }
 
     /**
-     * Loads the judgement dataset from a file
+     * Loads the judgement dataset from a file and partitions it by information need.
+     * If a document is judged more than once in the same information need the last judgement is kept.
      * @param path Path of the file which contains de judgements.
-     * @return A map with the documents with his judgement.
+     * @param documents Dictionary where the documents are interned.
+     * @return A map with the information need and its judgements.
+     * @throws IOException If the file can not be read or one of its lines is malformed.
      */
-    private static LinkedHashMap<String,Judgement> loadJudgements(String path) {
-        LinkedHashMap<String, Judgement> retval = new LinkedHashMap<>();
-        try {
-            BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(path)));
-            Judgement j;
-            String line;
-            while ((line = in.readLine()) != null) {
-                j = new Judgement(line);
-                retval.put(j.getIdRecoveredDoc(), j);
+    private static Map<String, InfoNeedJudgements> loadJudgements(String path, IdDictionary documents)
+            throws IOException {
+        IdDictionary infoNeeds = new IdDictionary();
+        int[] lineInfoNeeds = new int[1024];
+        int[] lineDocuments = new int[1024];
+        byte[] lineRelevances = new byte[1024];
+        int lines = 0;
+        Profiler.Timer timer = Profiler.start("parse qrels");
+        try (TabFileScanner in = new TabFileScanner(path)) {
+            in.detectWhitespaceColumns(3, 4);
+            while (in.next()) {
+                int column = in.isWhitespaceSeparated() ? 1 : 0;
+                in.requireFields(3 + column);
+                if (lines == lineInfoNeeds.length) {
+                    lineInfoNeeds = Arrays.copyOf(lineInfoNeeds, lines * 2);
+                    lineDocuments = Arrays.copyOf(lineDocuments, lines * 2);
+                    lineRelevances = Arrays.copyOf(lineRelevances, lines * 2);
+                }
+                lineInfoNeeds[lines] = in.intern(0, infoNeeds);
+                lineDocuments[lines] = in.intern(1 + column, documents);
+                int relevance;
+                try {
+                    relevance = in.parseInt(2 + column);
+                } catch (NumberFormatException e) {
+                    // The message already has the path and the line
+                    throw new IOException(e.getMessage(), e);
+                }
+                if (!InfoNeedJudgements.isValidGrade(relevance)) {
+                    throw new IOException(in.getPath() + ":" + in.getLineNumber() + ": relevance " + relevance
+                            + " out of range, it must be between " + Byte.MIN_VALUE + " and " + Byte.MAX_VALUE);
+                }
+                lineRelevances[lines] = (byte) relevance;
+                lines++;
             }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
+        }
+        timer.stop(lines);
+
+        // Lines grouped by information need keeping the order of the file
+        int[] start = new int[infoNeeds.size() + 1];
+        for (int i = 0; i < lines; i++) {
+            start[lineInfoNeeds[i] + 1]++;
+        }
+        for (int t = 0; t < infoNeeds.size(); t++) {
+            start[t + 1] += start[t];
+        }
+        long[] keys = new long[lines];
+        int[] next = Arrays.copyOf(start, infoNeeds.size());
+        for (int i = 0; i < lines; i++) {
+            keys[next[lineInfoNeeds[i]]++] = ((long) lineDocuments[i] << 32) | i;
+        }
+
+        timer = Profiler.start("index qrels");
+        Map<String, InfoNeedJudgements> retval = new LinkedHashMap<>();
+        for (int t = 0; t < infoNeeds.size(); t++) {
+            // Sorted by document and line, the last line of a document is the one kept
+            Arrays.sort(keys, start[t], start[t + 1]);
+            int[] docs = new int[start[t + 1] - start[t]];
+            byte[] relevances = new byte[docs.length];
+            int n = 0;
+            for (int k = start[t]; k < start[t + 1]; k++) {
+                int document = (int) (keys[k] >>> 32);
+                if (n > 0 && docs[n - 1] == document) {
+                    n--;
+                }
+                docs[n] = document;
+                relevances[n] = lineRelevances[(int) keys[k]];
+                n++;
+            }
+            String infoNeed = infoNeeds.get(t);
+            retval.put(infoNeed, new InfoNeedJudgements(infoNeed, Arrays.copyOf(docs, n), Arrays.copyOf(relevances, n)));
+        }
+        timer.stop(lines);
+        return Collections.unmodifiableMap(retval);
+    }
+
+    /**
+     * Get the dictionary of the judged documents. It must not be modified, use it as the parent of the dictionary of the
+     * recovered documents so the judged documents keep their ids.
+     * @return The dictionary with the ids of the judged documents.
+     */
+    public IdDictionary getDocuments() {
+        return documents;
+    }
+
+    /**
+     * @return Approximate number of bytes used by the judgements and their dictionary of documents.
+     */
+    public long getMemoryFootprint() {
+        long retval = documents.getMemoryFootprint();
+        for (InfoNeedJudgements infoNeedJudgements : judgements.values()) {
+            retval += infoNeedJudgements.getMemoryFootprint();
         }
         return retval;
     }
 
+    /**
+     * @return The number of judgements of every information need, without the repeated ones.
+     */
+    public long getNumJudgements() {
+        long retval = 0;
+        for (InfoNeedJudgements infoNeedJudgements : judgements.values()) {
+            retval += infoNeedJudgements.getNumJudged();
+        }
+        return retval;
+    }
+
+    /**
+     * Get the judgements of an information need.
+     * @param infoNeed Information need of the judgements.
+     * @return The judgements of the information need, empty if it has not been judged.
+     */
+    public InfoNeedJudgements getJudgementsByInfoNeed(String infoNeed) {
+        return judgements.getOrDefault(infoNeed, EMPTY);
+    }
+
+    /**
+     * Get the judged information needs.
+     * @return set with the information needs which have judgements, in order of appearance.
+     */
+    public Set<String> getInfoNeeds() {
+        return judgements.keySet();
+    }
+
     /**
      * Calculate the number of relevant judgements relatives to an provided information need
      * @param infoNeed Information need which you want to calculate the number of relevant judgements
      * @return The number of relevant
      */
     public int getNumRelevantJudgementsByInfoNeed(String infoNeed) {
-        int cont = 0;
-        for(Map.Entry me : judgements.entrySet()) {
-            Judgement j = ((Judgement) me.getValue());
-            if(j.getIdInformationNeed().equals(infoNeed) && j.isRelevant()) {
-                cont++;
-            }
-        }
-        return cont;
+        return getJudgementsByInfoNeed(infoNeed).getNumRelevant();
     }
 
     /**
-     * Count the number of relevant documents in a set of documents
-     * THE INFORMATION NEED IS NOT NECESSARY BECAUSE THE DOCUMENT ID CONTAINS IT. (DOC ID + INFORMATION NEED)
-     * BECAUSE OF THAT YOU ONLY EVALUATE THE SET OF DOCUMENT RELATIVE TO AN INFORMATION NEED INSTEAD OF ALL INFORMATION NEEDS.
-     * @param recoveredDocuments Set of documents which you need to evaluate (and count)
+     * Count the number of relevant documents in a ranking of an information need.
+     * Documents without judgement are counted as not relevant.
+     * @param infoNeed Information need of the documents.
+     * @param ranking Ids of the documents which you need to evaluate (and count)
      * @return return the number of relevant documents in a set of documents.
      */
-    public int getRelevanceOfDocumentSet(LinkedHashMap<String, RecoveredDocument> recoveredDocuments) {
+    public int getRelevanceOfDocumentSet(String infoNeed, int[] ranking) {
+        InfoNeedJudgements infoNeedJudgements = getJudgementsByInfoNeed(infoNeed);
         int cont = 0;
-        for (Map.Entry<String, RecoveredDocument> me : recoveredDocuments.entrySet()) {
-            if(isRelevant(me.getValue())) {
+        for (int document : ranking) {
+            if (infoNeedJudgements.isRelevant(document)) {
                 cont++;
-            }else if(judgements.get(me.getKey()) == null){
-                judgements.put(String.valueOf(me.getKey()),new Judgement((me.getValue()).getInfoNeedId(),
-                        (me.getValue()).getInfoNeedId(), 0));
             }
         }
         return cont;
     }
-
-    /**
-     * Evaluate if a document is relevant in a information need (The information need is included in the document id)
-     * @param rd document to evaluate
-     * @return true if the document is relevant in the information need.
-     */
-    public boolean isRelevant(RecoveredDocument rd){
-        return judgements.get(rd.getDocumentId()) != null && judgements.get(rd.getDocumentId()).isRelevant();
-    }
 }
@@ -0,0 +1,132 @@
+package com.recinfo.collection;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the judgements files already loaded so they are not parsed again in every evaluation.
+ * The judgements are identified by their path, size and modification date, so a file which changes is loaded again.
+ * When the judgements use more memory than the limit the least recently used ones are removed; judgements which are
+ * still used by an evaluation are not affected, they are only dropped from the cache.
+ * It can be used from several threads. Different files are loaded at the same time, the same file is loaded once.
+ */
+public class JudgementsCache {
+    private final long maxMemory;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memory;
+
+    /**
+     * @param maxMemory Maximum number of bytes used by the cached judgements. The last loaded judgements are kept even
+     *                  if they are bigger.
+     */
+    public JudgementsCache(long maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Get the judgements of a file, loading it if it is not in the cache or it has changed.
+     * @param relevancePath Path of the judgements file, it can be a compiled file.
+     * @return The judgements of the file.
+     * @throws IOException If the file does not exist, it can not be read or one of its lines is malformed.
+     */
+    public Judgements get(String relevancePath) throws IOException {
+        Path path = Paths.get(relevancePath).toAbsolutePath().normalize();
+        if (!Files.isRegularFile(path)) {
+            throw new IOException(relevancePath + " does not exist");
+        }
+        long size = Files.size(path);
+        long modified = Files.getLastModifiedTime(path).toMillis();
+
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(path.toString());
+            if (entry == null || entry.size != size || entry.modified != modified) {
+                if (entry != null && entry.accounted) {
+                    memory -= entry.memory;
+                }
+                entry = new Entry(size, modified);
+                entries.put(path.toString(), entry);
+            }
+        }
+
+        boolean loaded = false;
+        try {
+            synchronized (entry) {
+                if (entry.judgements == null) {
+                    entry.judgements = new Judgements(path.toString());
+                    entry.memory = entry.judgements.getMemoryFootprint();
+                    loaded = true;
+                }
+            }
+        } catch (RuntimeException e) {
+            // A failed load is never cached, the next request reads the file again
+            synchronized (this) {
+                entries.remove(path.toString(), entry);
+            }
+            if (e instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e).getCause();
+            }
+            throw e;
+        }
+
+        if (loaded) {
+            synchronized (this) {
+                if (entries.get(path.toString()) == entry) {
+                    memory += entry.memory;
+                    entry.accounted = true;
+                    evict(entry);
+                }
+            }
+        }
+        return entry.judgements;
+    }
+
+    /**
+     * Removes the least recently used judgements until the memory is under the limit.
+     * @param keep Judgements which are never removed.
+     */
+    private void evict(Entry keep) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (memory > maxMemory && it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (entry != keep && entry.accounted) {
+                memory -= entry.memory;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * @return Number of judgements files in the cache.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Approximate number of bytes used by the cached judgements.
+     */
+    public synchronized long getMemory() {
+        return memory;
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long modified;
+        private Judgements judgements;
+        private long memory;
+        // The memory of the entry is added to the cache, only changed with the lock of the cache
+        private boolean accounted;
+
+        private Entry(long size, long modified) {
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+}
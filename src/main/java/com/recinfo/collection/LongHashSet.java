@@ -0,0 +1,78 @@
+package com.recinfo.collection;
+
+import java.util.Arrays;
+
+/**
+ * Set of long values with open addressing, used to detect repeated (information need, document) pairs without boxing.
+ */
+class LongHashSet {
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] table;
+    private int size;
+
+    LongHashSet() {
+        table = new long[INITIAL_CAPACITY];
+        Arrays.fill(table, EMPTY);
+    }
+
+    /**
+     * @param value Value to add, it can not be Long.MIN_VALUE.
+     * @return true if the value was not in the set.
+     */
+    boolean add(long value) {
+        int mask = table.length - 1;
+        int slot = (int) mix(value) & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+        size++;
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return true;
+    }
+
+    /**
+     * Removes every value. The table keeps its size while it was well used, and shrinks to the smallest one which
+     * holds the values removed when they used less than an eighth of it, so the cost of clearing the set after every
+     * information need follows the size of the information need and not the size of the biggest one.
+     */
+    void clear() {
+        if (table.length > INITIAL_CAPACITY && size * 8 < table.length) {
+            int capacity = INITIAL_CAPACITY;
+            while (size * 2 > capacity) {
+                capacity *= 2;
+            }
+            table = new long[capacity];
+        }
+        Arrays.fill(table, EMPTY);
+        size = 0;
+    }
+
+    private void rehash() {
+        long[] old = table;
+        table = new long[old.length * 2];
+        Arrays.fill(table, EMPTY);
+        int mask = table.length - 1;
+        for (long value : old) {
+            if (value != EMPTY) {
+                int slot = (int) mix(value) & mask;
+                while (table[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = value;
+            }
+        }
+    }
+
+    private static long mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+}
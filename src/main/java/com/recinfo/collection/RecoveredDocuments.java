@@ -1,69 +1,207 @@
 package com.recinfo.collection;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
+import com.recinfo.profile.Profiler;
+
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
  * Class who provides an API to manage the access to a concrete collection of documents obtained in a information need search
+ * The documents are indexed by information need when the file is loaded, so every information need has its own ranking
+ * of document ids.
+ * The file can have two tab separated columns, the information need and the document in ranking order, or it can be a
+ * run in the TREC format (qid Q0 docno rank score tag), whose documents are ranked by their score like trec_eval does.
  */
 public class RecoveredDocuments {
-    private LinkedHashMap<String, RecoveredDocument> recoveredDocuments;
-    public RecoveredDocuments(String recoverSystemResultPath) {
-        recoveredDocuments = loadRecoveredDocuments(recoverSystemResultPath);
+    private final IdDictionary documents;
+    private final Map<String, int[]> rankings;
+    private final Map<String, double[]> scores = new HashMap<>();
+    private final Map<String, Integer> duplicates = new HashMap<>();
 
+    /**
+     * @param recoverSystemResultPath Path of the file which contains de documents, it can be a file compiled with
+     *                                {@link CompiledFiles}.
+     * @param documents Dictionary where the documents are interned. Use a dictionary whose parent is the one of the
+     *                  judgements so the judged documents have the same ids.
+     * @throws UncheckedIOException If the file can not be read or one of its lines is malformed, the documents are
+     *                              never loaded partially.
+     */
+    public RecoveredDocuments(String recoverSystemResultPath, IdDictionary documents) {
+        Map<String, int[]> rankings;
+        try {
+            if (CompiledFiles.isCompiled(recoverSystemResultPath)) {
+                Profiler.Timer timer = Profiler.start("read compiled run");
+                rankings = CompiledFiles.readRecoveredDocuments(
+                        CompiledFiles.map(recoverSystemResultPath, CompiledFiles.RECOVERED_DOCUMENTS), documents);
+                timer.stop(rankings.size());
+            } else {
+                try (TabFileScanner in = new TabFileScanner(recoverSystemResultPath)) {
+                    rankings = loadRecoveredDocuments(in, documents, scores, duplicates);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.documents = documents;
+        this.rankings = rankings;
     }
 
     /**
-     * Loads the document dataset from a file
-     * @param path Path of the file which contains de documents.
-     * @return A map with the documentid and his information.
+     * Loads the documents from the content of a recovered documents file which is already in memory.
+     * @param name Name of the content, used in the error messages.
+     * @param content Content in the format of a recovered documents file.
+     * @param documents Dictionary where the documents are interned.
+     * @throws UncheckedIOException If one of the lines of the content is malformed.
      */
-    private LinkedHashMap<String,RecoveredDocument> loadRecoveredDocuments(String path) {
-        LinkedHashMap<String,RecoveredDocument> retval = new LinkedHashMap<>();
+    public RecoveredDocuments(String name, byte[] content, IdDictionary documents) {
+        this.documents = documents;
         try {
-            BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(path)));
-            RecoveredDocument j;
-            String line;
-            while((line = in.readLine()) != null){
-                j = new RecoveredDocument(line);
-                retval.put(j.getDocumentId(), j);
-            }
+            this.rankings = loadRecoveredDocuments(new TabFileScanner(name, ByteBuffer.wrap(content)), documents,
+                    scores, duplicates);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Documents which are already ranked, like the result of a {@link RunFusion}.
+     * @param rankings Information needs and their ranking of document ids, in order.
+     * @param scores Scores of the documents of the rankings, the information needs can be missing.
+     * @param documents Dictionary of the documents of the rankings.
+     */
+    RecoveredDocuments(Map<String, int[]> rankings, Map<String, double[]> scores, IdDictionary documents) {
+        this.documents = documents;
+        this.rankings = rankings;
+        this.scores.putAll(scores);
+    }
+
+    /**
+     * Loads the document dataset from a file and builds the ranking of every information need in one pass.
+     * A document repeated in the same information need keeps the position, or the score, of its first appearance.
+     * @param in Scanner of the file which contains de documents.
+     * @param documents Dictionary where the documents are interned.
+     * @param rankingScores Map where the scores of the rankings are added, if the file is in the TREC format.
+     * @param duplicates Map where the number of repeated documents of every information need is added.
+     * @return A map with the information need and its ranking of document ids.
+     * @throws IOException If one of the lines is malformed.
+     */
+    private static Map<String, int[]> loadRecoveredDocuments(TabFileScanner in, IdDictionary documents,
+                                                             Map<String, double[]> rankingScores,
+                                                             Map<String, Integer> duplicates) throws IOException {
+        IdDictionary infoNeeds = new IdDictionary();
+        int[][] rankings = new int[16][];
+        double[][] scores = new double[16][];
+        int[] sizes = new int[16];
+        LongHashSet seen = new LongHashSet();
+        int lines = 0;
+        boolean trec = false;
+        Profiler.Timer timer = Profiler.start("parse run");
+        in.detectWhitespaceColumns(2, 6);
+        while (in.next()) {
+            trec = in.isWhitespaceSeparated();
+            in.requireFields(trec ? 6 : 2);
+            lines++;
+            int infoNeed = in.intern(0, infoNeeds);
+            int document = in.intern(trec ? 2 : 1, documents);
+            if (!seen.add(((long) infoNeed << 32) | document)) {
+                duplicates.merge(infoNeeds.get(infoNeed), 1, Integer::sum);
+                continue;
+            }
+            if (infoNeed == rankings.length) {
+                rankings = Arrays.copyOf(rankings, infoNeed * 2);
+                scores = Arrays.copyOf(scores, infoNeed * 2);
+                sizes = Arrays.copyOf(sizes, infoNeed * 2);
+            }
+            if (rankings[infoNeed] == null) {
+                rankings[infoNeed] = new int[64];
+                scores[infoNeed] = trec ? new double[64] : null;
+            } else if (sizes[infoNeed] == rankings[infoNeed].length) {
+                rankings[infoNeed] = Arrays.copyOf(rankings[infoNeed], sizes[infoNeed] * 2);
+                if (trec) {
+                    scores[infoNeed] = Arrays.copyOf(scores[infoNeed], sizes[infoNeed] * 2);
+                }
+            }
+            if (trec) {
+                scores[infoNeed][sizes[infoNeed]] = in.parseDouble(4);
+            }
+            rankings[infoNeed][sizes[infoNeed]++] = document;
+        }
+        timer.stop(lines);
+
+        if (trec) {
+            timer = Profiler.start("sort run");
+            for (int t = 0; t < infoNeeds.size(); t++) {
+                ScoredRanking.sort(rankings[t], scores[t], sizes[t], documents);
+            }
+            timer.stop(lines);
+        }
+        Map<String, int[]> retval = new LinkedHashMap<>();
+        for (int t = 0; t < infoNeeds.size(); t++) {
+            retval.put(infoNeeds.get(t), Arrays.copyOf(rankings[t], sizes[t]));
+            if (trec) {
+                rankingScores.put(infoNeeds.get(t), Arrays.copyOf(scores[t], sizes[t]));
+            }
         }
         return retval;
     }
 
     /**
      * Get the information needs in the dataset
-     * @return set with the name of the information needs in the dataset.
+     * @return set with the name of the information needs in the dataset, in order of appearance.
      */
     public Set<String> getInfoNeeds() {
-        Set<String> retval = new HashSet<>();
-        for(Map.Entry me : recoveredDocuments.entrySet()){
-            RecoveredDocument rd = (RecoveredDocument) me.getValue();
-            retval.add(rd.getInfoNeedId());
-        }
-        return retval;
+        return Collections.unmodifiableSet(rankings.keySet());
     }
 
     /**
      * Get the documents recovered in the information need query.
+     * The array is shared, it must not be modified.
      * @param infoNeed information need of the documents you want to obtain.
-     * @return the document recovered in the information need passed by parameter.
+     * @return the ids of the documents recovered in the information need passed by parameter, in order.
      */
-    public Map<String,RecoveredDocument> getDocumentsByInfoNeed(String infoNeed) {
-        Map<String,RecoveredDocument> retval = new LinkedHashMap<>();
-        for(Map.Entry<String, RecoveredDocument> me : recoveredDocuments.entrySet()){
-            RecoveredDocument rd = me.getValue();
-            if(rd.getInfoNeedId().equals(infoNeed)) {
-                retval.put(rd.getDocumentId(),rd);
-            }
+    public int[] getDocumentsByInfoNeed(String infoNeed) {
+        return rankings.getOrDefault(infoNeed, new int[0]);
+    }
+
+    /**
+     * Get the scores of the documents recovered in the information need query.
+     * The array is shared, it must not be modified.
+     * @param infoNeed information need of the documents.
+     * @return the score of every document of the ranking of the information need, in order, or null if the file has
+     *         no scores. Only the files in the TREC format have scores, compiled files do not keep them.
+     */
+    public double[] getScoresByInfoNeed(String infoNeed) {
+        return scores.get(infoNeed);
+    }
+
+    /**
+     * Get the number of documents which appear more than once in an information need. Only the first appearance is
+     * kept in the ranking. Compiled files have no repeated documents, they are removed when the file is compiled.
+     * @param infoNeed Information need.
+     * @return The number of repeated appearances which were ignored.
+     */
+    public int getDuplicates(String infoNeed) {
+        return duplicates.getOrDefault(infoNeed, 0);
+    }
+
+    /**
+     * @return The number of repeated appearances of documents ignored in every information need.
+     */
+    public int getNumDuplicates() {
+        int retval = 0;
+        for (int count : duplicates.values()) {
+            retval += count;
         }
         return retval;
     }
-    
+
+    /**
+     * @return The dictionary with the ids of the recovered documents.
+     */
+    public IdDictionary getDocuments() {
+        return documents;
+    }
+
 }
@@ -0,0 +1,127 @@
+package com.recinfo.collection;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Reads a file of recovered documents one information need at a time.
+ * The documents of every information need must be written together in the file, like the system outputs do, so only
+ * the ranking of the information need being read is kept in memory. Runs in the TREC format are ranked by their
+ * score like in {@link RecoveredDocuments}.
+ */
+public class RecoveredDocumentsStream implements Closeable {
+    private final TabFileScanner in;
+    private final IdDictionary documents;
+    private final IdDictionary infoNeeds;
+    private final BitSet finishedInfoNeeds;
+    private final LongHashSet seen;
+    private int[] ranking;
+    private double[] scores;
+    private String infoNeed;
+    private int duplicates;
+    private int numDuplicates;
+    private boolean pending;
+
+    /**
+     * @param recoverSystemResultPath Path of the file which contains de documents.
+     * @param judgedDocuments Dictionary of the judged documents, they keep their ids. The other documents get new ids
+     *                        which are only valid until the next information need is read.
+     * @throws IOException If the file can not be opened or it is a compiled file.
+     */
+    public RecoveredDocumentsStream(String recoverSystemResultPath, IdDictionary judgedDocuments) throws IOException {
+        if (CompiledFiles.isCompiled(recoverSystemResultPath)) {
+            throw new IOException(recoverSystemResultPath + " is a compiled file, it can not be read as a stream");
+        }
+        this.in = new TabFileScanner(recoverSystemResultPath);
+        this.documents = new IdDictionary(judgedDocuments);
+        this.infoNeeds = new IdDictionary();
+        this.finishedInfoNeeds = new BitSet();
+        this.seen = new LongHashSet();
+        this.ranking = new int[64];
+        in.detectWhitespaceColumns(2, 6);
+        this.pending = in.next();
+        this.scores = in.isWhitespaceSeparated() ? new double[64] : null;
+    }
+
+    /**
+     * Reads the ranking of the next information need in the file.
+     * A document repeated in the same information need keeps the position, or the score, of its first appearance.
+     * @return The ids of the documents of the next information need in order, or null at the end of the file.
+     * @throws IOException If the file can not be read or an information need appears again after another one.
+     */
+    public int[] nextInfoNeed() throws IOException {
+        if (!pending) {
+            return null;
+        }
+        boolean trec = scores != null;
+        int fields = trec ? 6 : 2;
+        in.requireFields(fields);
+        int current = in.intern(0, infoNeeds);
+        infoNeed = infoNeeds.get(current);
+        if (finishedInfoNeeds.get(current)) {
+            throw new IOException(in.getPath() + ":" + in.getLineNumber() + ": information need " + infoNeed
+                    + " appears again after other information needs. The file must be grouped by information need,"
+                    + " sort it first (sort -s -t$'\\t' -k1,1) or evaluate it without -stream");
+        }
+
+        documents.clear();
+        seen.clear();
+        duplicates = 0;
+        int size = 0;
+        do {
+            in.requireFields(fields);
+            if (in.intern(0, infoNeeds) != current) {
+                break;
+            }
+            int document = in.intern(trec ? 2 : 1, documents);
+            if (seen.add(document)) {
+                if (size == ranking.length) {
+                    ranking = Arrays.copyOf(ranking, size * 2);
+                    if (trec) {
+                        scores = Arrays.copyOf(scores, size * 2);
+                    }
+                }
+                if (trec) {
+                    scores[size] = in.parseDouble(4);
+                }
+                ranking[size++] = document;
+            } else {
+                duplicates++;
+            }
+            pending = in.next();
+        } while (pending);
+        if (trec) {
+            ScoredRanking.sort(ranking, scores, size, documents);
+        }
+        finishedInfoNeeds.set(current);
+        numDuplicates += duplicates;
+        return Arrays.copyOf(ranking, size);
+    }
+
+    /**
+     * @return The information need of the last ranking read.
+     */
+    public String getInfoNeed() {
+        return infoNeed;
+    }
+
+    /**
+     * @return The number of repeated appearances of documents ignored in the last ranking read.
+     */
+    public int getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * @return The number of repeated appearances of documents ignored in every ranking read.
+     */
+    public int getNumDuplicates() {
+        return numDuplicates;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
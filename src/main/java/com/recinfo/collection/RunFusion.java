@@ -0,0 +1,157 @@
+package com.recinfo.collection;
+
+import com.recinfo.concurrent.Parallel;
+import com.recinfo.profile.Profiler;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * Fuses the rankings of several runs into a single run, in memory.
+ * The runs are loaded once with a shared dictionary, so a document has the same id in every run, and they can be fused
+ * many times with different methods and parameters. The fused run is a {@link RecoveredDocuments} which is evaluated
+ * like any other run, its documents are ranked by their fused score like a run in the TREC format.
+ */
+public class RunFusion {
+
+    /**
+     * Fusion methods.
+     */
+    public enum Method {
+        /**
+         * Reciprocal rank fusion: the score of a document is the sum of 1 / (k + rank) of every run.
+         */
+        RRF,
+        /**
+         * The score of a document is the sum of its normalized scores in every run.
+         */
+        COMBSUM,
+        /**
+         * The CombSUM score multiplied by the number of runs which recover the document.
+         */
+        COMBMNZ;
+
+        /**
+         * @param name Name of the method, in any case.
+         * @return The method with the name.
+         * @throws IllegalArgumentException If there is no method with the name.
+         */
+        public static Method parse(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown fusion method " + name + ", use one of "
+                        + Arrays.toString(values()).toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    private final IdDictionary documents;
+    private final RecoveredDocuments[] runs;
+    private final List<String> infoNeeds;
+
+    /**
+     * Loads the runs to fuse.
+     * @param paths Paths of the runs, in any format read by {@link RecoveredDocuments}.
+     * @param documents Dictionary where the documents of every run are interned. Use a dictionary whose parent is the
+     *                  one of the judgements so the judged documents have the same ids.
+     */
+    public RunFusion(List<String> paths, IdDictionary documents) {
+        this.documents = documents;
+        this.runs = new RecoveredDocuments[paths.size()];
+        // The runs share the dictionary, so they are loaded one after the other
+        Set<String> infoNeeds = new LinkedHashSet<>();
+        for (int r = 0; r < runs.length; r++) {
+            runs[r] = new RecoveredDocuments(paths.get(r), documents);
+            infoNeeds.addAll(runs[r].getInfoNeeds());
+        }
+        this.infoNeeds = new ArrayList<>(infoNeeds);
+    }
+
+    /**
+     * @return The loaded runs, in the order of their paths.
+     */
+    public RecoveredDocuments[] getRuns() {
+        return runs.clone();
+    }
+
+    /**
+     * Fuses the rankings of every information need of the runs.
+     * The scores of a run are normalized in every information need with min-max normalization before they are added
+     * by CombSUM and CombMNZ, if every document has the same score they get 1. Runs without scores get the score
+     * n - rank + 1, where n is the number of documents taken from the run.
+     * @param method Fusion method.
+     * @param k Constant of {@link Method#RRF}, ignored by the other methods.
+     * @param depth Number of documents taken from the top of every ranking, 0 to take all of them.
+     * @param threads Number of threads, 1 fuses the information needs in order in the current thread and 0 uses every
+     *                core.
+     * @return The fused run, with the information needs in order of appearance in the runs.
+     */
+    public RecoveredDocuments fuse(Method method, double k, int depth, int threads) {
+        int[][] rankings = new int[infoNeeds.size()][];
+        double[][] scores = new double[infoNeeds.size()][];
+        IntConsumer fuseInfoNeed = t -> {
+            String infoNeed = infoNeeds.get(t);
+            int expected = 0;
+            for (RecoveredDocuments run : runs) {
+                expected += limit(run.getDocumentsByInfoNeed(infoNeed).length, depth);
+            }
+            DocumentScores fused = new DocumentScores(expected);
+            for (RecoveredDocuments run : runs) {
+                addRun(fused, run.getDocumentsByInfoNeed(infoNeed), run.getScoresByInfoNeed(infoNeed), method, k,
+                        depth);
+            }
+
+            int[] ranking = new int[fused.size()];
+            double[] fusedScores = new double[fused.size()];
+            for (int i = 0; i < ranking.length; i++) {
+                ranking[i] = fused.getDocument(i);
+                fusedScores[i] = method == Method.COMBMNZ ? fused.getScore(i) * fused.getHits(i) : fused.getScore(i);
+            }
+            ScoredRanking.sort(ranking, fusedScores, ranking.length, documents);
+            rankings[t] = ranking;
+            scores[t] = fusedScores;
+        };
+
+        Profiler.Timer timer = Profiler.start("fuse runs");
+        Parallel.forEach(rankings.length, threads, fuseInfoNeed);
+        timer.stop(rankings.length);
+
+        Map<String, int[]> fusedRankings = new LinkedHashMap<>();
+        Map<String, double[]> fusedScores = new HashMap<>();
+        for (int t = 0; t < rankings.length; t++) {
+            fusedRankings.put(infoNeeds.get(t), rankings[t]);
+            fusedScores.put(infoNeeds.get(t), scores[t]);
+        }
+        return new RecoveredDocuments(fusedRankings, fusedScores, documents);
+    }
+
+    /**
+     * Adds the scores of the ranking of a run to the fused scores.
+     */
+    private static void addRun(DocumentScores fused, int[] ranking, double[] scores, Method method, double k,
+                               int depth) {
+        int n = limit(ranking.length, depth);
+        if (method == Method.RRF) {
+            for (int rank = 1; rank <= n; rank++) {
+                fused.add(ranking[rank - 1], 1 / (k + rank));
+            }
+            return;
+        }
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            double score = scores == null ? n - i : scores[i];
+            min = Math.min(min, score);
+            max = Math.max(max, score);
+        }
+        for (int i = 0; i < n; i++) {
+            double score = scores == null ? n - i : scores[i];
+            fused.add(ranking[i], max > min ? (score - min) / (max - min) : 1);
+        }
+    }
+
+    private static int limit(int length, int depth) {
+        return depth > 0 ? Math.min(length, depth) : length;
+    }
+}
@@ -0,0 +1,111 @@
+package com.recinfo.collection;
+
+import java.util.Arrays;
+
+/**
+ * Sorts the documents of a run in the TREC format by their score, like trec_eval does: from the highest score to the
+ * lowest and the documents with the same score by their id from the greatest to the lowest in byte order. The rank
+ * written in the run is ignored.
+ * The documents and the scores are kept in parallel arrays and they are sorted with primitive sorts, without creating
+ * an object per document.
+ */
+final class ScoredRanking {
+
+    private ScoredRanking() {
+    }
+
+    /**
+     * Sorts the first documents of a ranking by their score. Most runs are already written in order, then the ranking is
+     * only checked.
+     * @param documents Ids of the documents, they are sorted in place.
+     * @param scores Score of every document, they are sorted in place.
+     * @param size Number of documents of the ranking.
+     * @param dictionary Dictionary of the documents, used to break the ties.
+     */
+    static void sort(int[] documents, double[] scores, int size, IdDictionary dictionary) {
+        if (isSorted(documents, scores, size, dictionary)) {
+            return;
+        }
+        // The bits of the score in descending order with its position in the lowest bits, which only changes the order
+        // of scores equal in every bit but the lowest ones
+        int positionBits = 32 - Integer.numberOfLeadingZeros(Math.max(size - 1, 1));
+        long positionMask = (1L << positionBits) - 1;
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            long bits = Double.doubleToLongBits(scores[i]);
+            long ordered = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+            keys[i] = (~ordered & ~positionMask) | i;
+        }
+        Arrays.sort(keys);
+
+        int[] sortedDocuments = new int[size];
+        double[] sortedScores = new double[size];
+        for (int k = 0; k < size; k++) {
+            int i = (int) (keys[k] & positionMask);
+            sortedDocuments[k] = documents[i];
+            sortedScores[k] = scores[i];
+        }
+        // Only the scores which differ in the lowest bits can be out of order, an insertion sort moves them
+        for (int k = 1; k < size; k++) {
+            int document = sortedDocuments[k];
+            double score = sortedScores[k];
+            int j = k;
+            while (j > 0 && score > sortedScores[j - 1]) {
+                sortedDocuments[j] = sortedDocuments[j - 1];
+                sortedScores[j] = sortedScores[j - 1];
+                j--;
+            }
+            sortedDocuments[j] = document;
+            sortedScores[j] = score;
+        }
+        int start = 0;
+        for (int k = 1; k <= size; k++) {
+            if (k == size || sortedScores[k] != sortedScores[start]) {
+                if (k - start > 1) {
+                    sortTies(sortedDocuments, start, k, dictionary);
+                }
+                start = k;
+            }
+        }
+        System.arraycopy(sortedDocuments, 0, documents, 0, size);
+        System.arraycopy(sortedScores, 0, scores, 0, size);
+    }
+
+    private static boolean isSorted(int[] documents, double[] scores, int size, IdDictionary dictionary) {
+        for (int k = 1; k < size; k++) {
+            if (isBefore(documents[k], scores[k], documents[k - 1], scores[k - 1], dictionary)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sorts the documents with the same score from the greatest id to the lowest with a binary insertion sort, the
+     * ties are usually a few documents.
+     */
+    private static void sortTies(int[] documents, int from, int to, IdDictionary dictionary) {
+        for (int k = from + 1; k < to; k++) {
+            int document = documents[k];
+            int low = from;
+            int high = k;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (dictionary.compare(documents[middle], document) >= 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            System.arraycopy(documents, low, documents, low + 1, k - low);
+            documents[low] = document;
+        }
+    }
+
+    /**
+     * @return true if the first document goes before the second one in the ranking.
+     */
+    private static boolean isBefore(int document, double score, int other, double otherScore, IdDictionary dictionary) {
+        return score > otherScore || (score == otherScore && dictionary.compare(document, other) > 0);
+    }
+}
@@ -0,0 +1,345 @@
+package com.recinfo.collection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file of tab separated columns (judgements or recovered documents) line by line.
+ * The file is memory mapped and the lines are split looking for the tab and newline bytes directly, the columns are
+ * read as ints or interned in an {@link IdDictionary} without creating a String per line.
+ * Empty lines are skipped. Files in the TREC formats, whose columns are separated by spaces, are detected with
+ * {@link #detectWhitespaceColumns(int, int)}.
+ */
+public class TabFileScanner implements Closeable {
+    private static final int MAX_FIELDS = 8;
+    private static final long WINDOW_SIZE = 1L << 30;
+    private static final long MIN_MAPPED_SIZE = 1L << 20;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private final String path;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int[] fieldStart;
+    private final int[] fieldEnd;
+    private ByteBuffer buffer;
+    private long windowStart;
+    private int position;
+    private int fieldCount;
+    private long lineNumber;
+    private int lineStart;
+    private int lineEnd;
+    private boolean whitespaceSeparated;
+    private int detectTabColumns;
+    private int detectWhitespaceColumns;
+
+    public TabFileScanner(String path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.fieldStart = new int[MAX_FIELDS];
+        this.fieldEnd = new int[MAX_FIELDS];
+        map(0);
+    }
+
+    /**
+     * Reads lines from memory instead of a file.
+     * @param name Name used in the error messages.
+     * @param content Content to read, from its position to its limit.
+     */
+    public TabFileScanner(String name, ByteBuffer content) {
+        this.path = name;
+        this.channel = null;
+        this.buffer = content.slice();
+        this.fileSize = buffer.limit();
+        this.fieldStart = new int[MAX_FIELDS];
+        this.fieldEnd = new int[MAX_FIELDS];
+    }
+
+    /**
+     * Maps the part of the file which starts in a position. Files bigger than the window are mapped in several parts.
+     * Small files are read into memory because mapping them costs more than reading them.
+     */
+    private void map(long start) throws IOException {
+        windowStart = start;
+        if (fileSize < MIN_MAPPED_SIZE) {
+            buffer = ByteBuffer.allocate((int) fileSize);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+        } else {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, fileSize - start));
+        }
+        position = 0;
+    }
+
+    /**
+     * Moves to the next line which is not empty.
+     * @return false at the end of the file.
+     * @throws IOException If the file can not be read.
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            int limit = buffer.limit();
+            if (position >= limit) {
+                if (windowStart + position >= fileSize) {
+                    return false;
+                }
+                map(windowStart + position);
+                limit = buffer.limit();
+            }
+            int end = position;
+            while (end < limit && buffer.get(end) != '\n') {
+                end++;
+            }
+            if (end == limit && windowStart + limit < fileSize) {
+                if (position == 0) {
+                    throw new IOException(path + ": line " + (lineNumber + 1) + " is too long");
+                }
+                map(windowStart + position);
+                continue;
+            }
+
+            lineNumber++;
+            lineStart = position;
+            lineEnd = end > position && buffer.get(end - 1) == '\r' ? end - 1 : end;
+            split(lineStart, lineEnd);
+            position = end + 1;
+            if (fieldCount > 1 || fieldEnd[0] > fieldStart[0]) {
+                if (detectWhitespaceColumns > 0) {
+                    detect();
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reads the lines of the file split by runs of spaces and tabs if its first line does not have the given number of
+     * tab separated columns but it has the given number of columns split that way, like the TREC formats. It must be
+     * called before the first line is read.
+     * @param tabColumns Number of tab separated columns of the lines in the format of this project.
+     * @param whitespaceColumns Number of columns of the lines in the TREC format.
+     */
+    public void detectWhitespaceColumns(int tabColumns, int whitespaceColumns) {
+        this.detectTabColumns = tabColumns;
+        this.detectWhitespaceColumns = whitespaceColumns;
+    }
+
+    /**
+     * Chooses the separator of the columns with the first line.
+     */
+    private void detect() {
+        if (fieldCount != detectTabColumns) {
+            whitespaceSeparated = true;
+            split(lineStart, lineEnd);
+            if (fieldCount != detectWhitespaceColumns) {
+                whitespaceSeparated = false;
+                split(lineStart, lineEnd);
+            }
+        }
+        detectWhitespaceColumns = 0;
+    }
+
+    /**
+     * @return true if the columns are separated by runs of spaces and tabs, like the TREC formats.
+     */
+    public boolean isWhitespaceSeparated() {
+        return whitespaceSeparated;
+    }
+
+    private void split(int start, int end) {
+        if (whitespaceSeparated) {
+            splitWhitespace(start, end);
+            return;
+        }
+        fieldCount = 0;
+        fieldStart[0] = start;
+        for (int i = start; i < end && fieldCount < MAX_FIELDS - 1; i++) {
+            if (buffer.get(i) == '\t') {
+                fieldEnd[fieldCount] = i;
+                fieldCount++;
+                fieldStart[fieldCount] = i + 1;
+            }
+        }
+        fieldEnd[fieldCount] = end;
+        fieldCount++;
+    }
+
+    private void splitWhitespace(int start, int end) {
+        fieldCount = 0;
+        int i = start;
+        while (i < end && fieldCount < MAX_FIELDS) {
+            while (i < end && isWhitespace(buffer.get(i))) {
+                i++;
+            }
+            if (i == end) {
+                break;
+            }
+            fieldStart[fieldCount] = i;
+            while (i < end && !isWhitespace(buffer.get(i))) {
+                i++;
+            }
+            fieldEnd[fieldCount] = i;
+            fieldCount++;
+        }
+        if (fieldCount == 0) {
+            fieldStart[0] = start;
+            fieldEnd[0] = start;
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+     * @return Number of columns of the current line.
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Checks that the current line has enough columns.
+     * @param fields Minimum number of columns.
+     * @throws IOException If the line has less columns.
+     */
+    public void requireFields(int fields) throws IOException {
+        if (fieldCount < fields) {
+            throw new IOException(path + ":" + lineNumber + ": expected " + fields
+                    + (whitespaceSeparated ? " columns" : " tab separated columns") + " but found " + fieldCount);
+        }
+    }
+
+    /**
+     * @param field Column of the current line, starting in 0.
+     * @param dictionary Dictionary where the column is interned.
+     * @return The id of the column in the dictionary.
+     */
+    public int intern(int field, IdDictionary dictionary) {
+        return dictionary.intern(buffer, fieldStart[field], fieldEnd[field] - fieldStart[field]);
+    }
+
+    /**
+     * @param field Column of the current line, starting in 0.
+     * @return The column read as a decimal int.
+     * @throws NumberFormatException If the column is not an int or it is out of the range of an int.
+     */
+    public int parseInt(int field) {
+        int i = fieldStart[field];
+        int end = fieldEnd[field];
+        boolean negative = i < end && buffer.get(i) == '-';
+        if (negative || (i < end && buffer.get(i) == '+')) {
+            i++;
+        }
+        if (i == end) {
+            throw new NumberFormatException(path + ":" + lineNumber + ": expected a number but found \""
+                    + getString(field) + "\"");
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException(path + ":" + lineNumber + ": expected a number but found \""
+                        + getString(field) + "\"");
+            }
+            value = value * 10 + digit;
+            // A number out of the range of an int would wrap around to any other value
+            if (value > (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE)) {
+                throw new NumberFormatException(path + ":" + lineNumber + ": number \"" + getString(field)
+                        + "\" out of range");
+            }
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Reads a column as a double. Plain decimal numbers with up to 15 digits, like the scores of the runs, are
+     * converted without creating a String, the result is the same as {@link Double#parseDouble(String)}.
+     * @param field Column of the current line, starting in 0.
+     * @return The column read as a double.
+     * @throws NumberFormatException If the column is not a number.
+     */
+    public double parseDouble(int field) {
+        int i = fieldStart[field];
+        int end = fieldEnd[field];
+        boolean negative = i < end && buffer.get(i) == '-';
+        if (negative || (i < end && buffer.get(i) == '+')) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9 || digits == 15) {
+                return parseDoubleString(field);
+            }
+            mantissa = mantissa * 10 + digit;
+            digits++;
+            if (decimals >= 0) {
+                decimals++;
+            }
+        }
+        if (digits == 0) {
+            return parseDoubleString(field);
+        }
+        // Both numbers are exact doubles, so the division is rounded once like the conversion of the text
+        double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private double parseDoubleString(int field) {
+        try {
+            return Double.parseDouble(getString(field));
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException(path + ":" + lineNumber + ": expected a number but found \""
+                    + getString(field) + "\"");
+        }
+    }
+
+    /**
+     * @param field Column of the current line, starting in 0.
+     * @return The column as a String.
+     */
+    public String getString(int field) {
+        byte[] b = new byte[fieldEnd[field] - fieldStart[field]];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = buffer.get(fieldStart[field] + i);
+        }
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Number of the current line, starting in 1.
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
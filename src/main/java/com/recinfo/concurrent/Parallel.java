@@ -0,0 +1,37 @@
+package com.recinfo.concurrent;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Runs independent tasks, like the information needs of an evaluation or the blocks of a resampling, in a pool with the
+ * number of threads chosen in the command line. Every call uses its own pool, which is shut down when the tasks end, so
+ * the threads of an evaluation do not depend on the common pool.
+ */
+public final class Parallel {
+
+    private Parallel() {
+    }
+
+    /**
+     * Runs a task for every index.
+     * @param count Number of indexes.
+     * @param threads Number of threads, 1 runs the tasks in order in the current thread and 0 uses every core.
+     * @param task Task which receives the index.
+     */
+    public static void forEach(int count, int threads, IntConsumer task) {
+        if (threads == 1) {
+            for (int i = 0; i < count; i++) {
+                task.accept(i);
+            }
+        } else {
+            ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : new ForkJoinPool();
+            try {
+                pool.submit(() -> IntStream.range(0, count).parallel().forEach(task)).join();
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.recinfo.metrics;
+
+import com.recinfo.collection.InfoNeedJudgements;
+
+/**
+ * Expected reciprocal rank of the first k documents of the ranking.
+ * A document of relevance g stops the user with probability (2^g - 1) / 2^max, where max is the highest relevance of
+ * the judgements of the information need, and the measure is the expected inverse of the position where the user stops.
+ */
+public class ErrAccumulator implements MetricAccumulator {
+    private final int k;
+    private double maxGain;
+    private double notStopped;
+    private double err;
+
+    /**
+     * @param k Number of documents of the ranking which are evaluated.
+     */
+    public ErrAccumulator(int k) {
+        this.k = k;
+    }
+
+    @Override
+    public String getName() {
+        return "ERR@" + k;
+    }
+
+    @Override
+    public void start(InfoNeedJudgements judgements) {
+        maxGain = Math.pow(2, judgements.getMaxRelevance());
+        notStopped = 1;
+        err = 0;
+    }
+
+    @Override
+    public void accept(int rank, int relevance, int numRelevantRetrieved) {
+        if (rank <= k && relevance > 0) {
+            double stop = (Math.pow(2, relevance) - 1) / maxGain;
+            err += notStopped * stop / rank;
+            notStopped *= 1 - stop;
+        }
+    }
+
+    @Override
+    public float getValue() {
+        return (float) err;
+    }
+}
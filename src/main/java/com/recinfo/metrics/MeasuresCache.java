@@ -0,0 +1,81 @@
+package com.recinfo.metrics;
+
+import java.io.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures of every information need of a previous evaluation, stored in a file so an evaluation only computes again
+ * the information needs whose ranking or judgements have changed.
+ * The cache is only valid for the configuration of the engine which wrote it. It is not modified once it is loaded,
+ * so it can be read from several threads.
+ */
+public class MeasuresCache {
+    private static final int VERSION = 2;
+
+    private final Map<String, TopicMeasures> measures;
+
+    private MeasuresCache(Map<String, TopicMeasures> measures) {
+        this.measures = measures;
+    }
+
+    /**
+     * Loads a cache. A cache which does not exist, can not be read or was written with another configuration is empty.
+     * @param file File of the cache.
+     * @param configurationKey Key of the configuration of the engine, {@link MetricEngine#getConfigurationKey()}.
+     * @return The cache.
+     */
+    public static MeasuresCache load(File file, long configurationKey) {
+        Map<String, TopicMeasures> measures = new HashMap<>();
+        if (file.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() == VERSION && in.readLong() == configurationKey) {
+                    int n = in.readInt();
+                    for (int i = 0; i < n; i++) {
+                        TopicMeasures topicMeasures = TopicMeasures.read(in);
+                        measures.put(topicMeasures.getInfoNeed(), topicMeasures);
+                    }
+                }
+            } catch (IOException e) {
+                measures.clear();
+            }
+        }
+        return new MeasuresCache(Collections.unmodifiableMap(measures));
+    }
+
+    /**
+     * Writes the measures of an evaluation as the new cache.
+     * @param file File of the cache.
+     * @param configurationKey Key of the configuration of the engine, {@link MetricEngine#getConfigurationKey()}.
+     * @param measures Measures of every information need.
+     * @throws IOException If the file can not be written.
+     */
+    public static void save(File file, long configurationKey, TopicMeasures[] measures) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(VERSION);
+            out.writeLong(configurationKey);
+            out.writeInt(measures.length);
+            for (TopicMeasures topicMeasures : measures) {
+                topicMeasures.write(out);
+            }
+        }
+    }
+
+    /**
+     * @param infoNeed Information need.
+     * @param key Hash of the current ranking and judgements of the information need.
+     * @return The cached measures, or null if the information need is not cached or its key has changed.
+     */
+    public TopicMeasures get(String infoNeed, long key) {
+        TopicMeasures retval = measures.get(infoNeed);
+        return retval != null && retval.getKey() == key ? retval : null;
+    }
+
+    /**
+     * @return Number of information needs in the cache.
+     */
+    public int size() {
+        return measures.size();
+    }
+}
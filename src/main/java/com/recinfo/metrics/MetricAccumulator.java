@@ -0,0 +1,46 @@
+package com.recinfo.metrics;
+
+import com.recinfo.collection.InfoNeedJudgements;
+
+/**
+ * Measure computed while the ranking of an information need is walked.
+ * The engine calls it once per ranked document, in the same pass used for the other measures,
+ * so adding a new measure does not add another traversal of the ranking.
+ * An accumulator keeps state, so every evaluated information need uses a new instance.
+ */
+public interface MetricAccumulator {
+
+    /**
+     * @return Name of the measure.
+     */
+    String getName();
+
+    /**
+     * Called before the first document of the ranking.
+     * @param numRelevant Number of relevant judgements of the information need.
+     */
+    default void start(int numRelevant) {
+    }
+
+    /**
+     * Called before the first document of the ranking, for measures which need more than the number of relevant
+     * judgements, like the ideal ranking. By default it calls {@link #start(int)}.
+     * @param judgements Judgements of the information need.
+     */
+    default void start(InfoNeedJudgements judgements) {
+        start(judgements.getNumRelevant());
+    }
+
+    /**
+     * Called for every document of the ranking, in order.
+     * @param rank Position of the document, starting in 1.
+     * @param relevance Relevance written in the judgements, or {@link RankingSweep#UNJUDGED} if it is not judged.
+     * @param numRelevantRetrieved Number of relevant documents up to this position (included).
+     */
+    void accept(int rank, int relevance, int numRelevantRetrieved);
+
+    /**
+     * @return Value of the measure once the ranking has been walked.
+     */
+    float getValue();
+}
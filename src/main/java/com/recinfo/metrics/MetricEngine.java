@@ -0,0 +1,457 @@
+package com.recinfo.metrics;
+
+import com.recinfo.collection.InfoNeedJudgements;
+import com.recinfo.profile.Profiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Computes every measure of an information need from a single walk of its ranking.
+ * The engine only keeps its configuration, so the same instance can be used from several threads.
+ */
+public class MetricEngine {
+    public static final float[] INTERPOLATED_RECALL_LEVELS = {0, 0.1f, 0.2f, 0.3f, 0.4f, 0.5f, 0.6f, 0.7f, 0.8f, 0.9f, 1};
+    public static final float[] RECALL_PRECISION_LEVELS = {0.1f, 0.2f, 0.3f, 0.4f, 0.5f, 0.6f, 0.7f, 0.8f, 0.9f};
+    // Smoothing of the inferred average precision, like trec_eval
+    private static final double INFAP_EPSILON = 0.00001;
+
+    private final int precisionCutoff;
+    private final int averagePrecisionCutoff;
+    private final List<Supplier<MetricAccumulator>> accumulators;
+    private int[] cutoffs = new int[0];
+    private boolean condensed;
+
+    /**
+     * @param precisionCutoff Number of top documents used in the precision at k.
+     * @param averagePrecisionCutoff Number of top documents used in the average precision.
+     */
+    public MetricEngine(int precisionCutoff, int averagePrecisionCutoff) {
+        this.precisionCutoff = precisionCutoff;
+        this.averagePrecisionCutoff = averagePrecisionCutoff;
+        this.accumulators = new ArrayList<>();
+    }
+
+    /**
+     * Registers a new measure computed in the same walk than the others.
+     * It must be called before the engine is shared between threads.
+     * @param accumulator Creates a new accumulator for every information need.
+     */
+    public void addAccumulator(Supplier<MetricAccumulator> accumulator) {
+        accumulators.add(accumulator);
+    }
+
+    /**
+     * Sets the cutoffs where the precision, recall, average precision and normalized discounted cumulative gain are
+     * reported, as P@k, R@k, AP@k and NDCG@k. It must be called before the engine is shared between threads.
+     * @param cutoffs Number of top documents of every cutoff.
+     */
+    public void setCutoffs(int... cutoffs) {
+        this.cutoffs = Arrays.stream(cutoffs).filter(k -> k > 0).sorted().distinct().toArray();
+    }
+
+    /**
+     * Enables the measures for rankings with many unjudged documents: the rate of unjudged documents and bpref, infAP
+     * and the average precision of the condensed ranking, which skip the unjudged documents. They are reported as
+     * UNJUDGED, BPREF, INFAP and CONDENSED AP. It must be called before the engine is shared between threads.
+     * @param condensed true to compute the measures.
+     */
+    public void setCondensedMeasures(boolean condensed) {
+        this.condensed = condensed;
+    }
+
+    public int[] getCutoffs() {
+        return cutoffs.clone();
+    }
+
+    public int getPrecisionCutoff() {
+        return precisionCutoff;
+    }
+
+    public int getAveragePrecisionCutoff() {
+        return averagePrecisionCutoff;
+    }
+
+    /**
+     * Evaluates the ranking of an information need.
+     * @param infoNeed Information need of the ranking.
+     * @param ranking Ids of the documents recovered in the information need, in order.
+     * @param judgements Judgements of the information need.
+     * @return The measures of the information need.
+     */
+    public TopicMeasures evaluate(String infoNeed, int[] ranking, InfoNeedJudgements judgements) {
+        return evaluate(infoNeed, ranking, judgements, null);
+    }
+
+    /**
+     * Evaluates the ranking of an information need, reusing the measures of a previous evaluation when neither the
+     * relevance of the ranking nor the judgements of the information need have changed.
+     * @param infoNeed Information need of the ranking.
+     * @param ranking Ids of the documents recovered in the information need, in order.
+     * @param judgements Judgements of the information need.
+     * @param cache Measures of a previous evaluation with this configuration, or null.
+     * @return The measures of the information need.
+     */
+    public TopicMeasures evaluate(String infoNeed, int[] ranking, InfoNeedJudgements judgements, MeasuresCache cache) {
+        // The key does not need the walk of the ranking, so a cached information need is not walked
+        long key = key(ranking, judgements);
+        if (cache != null) {
+            TopicMeasures cached = cache.get(infoNeed, key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        MetricAccumulator[] instances = new MetricAccumulator[accumulators.size()];
+        for (int i = 0; i < instances.length; i++) {
+            instances[i] = accumulators.get(i).get();
+        }
+        Profiler.Timer timer = Profiler.start("metric: sweep");
+        RankingSweep sweep = new RankingSweep(ranking, judgements, instances);
+        timer.stop(ranking.length);
+
+        Map<String, Float> accumulated = new LinkedHashMap<>();
+        for (MetricAccumulator accumulator : instances) {
+            accumulated.put(accumulator.getName(), accumulator.getValue());
+        }
+        if (condensed) {
+            timer = Profiler.start("metric: condensed");
+            accumulated.put("UNJUDGED", unjudgedRate(sweep));
+            accumulated.put("BPREF", bpref(sweep, judgements));
+            accumulated.put("INFAP", inferredAveragePrecision(sweep));
+            accumulated.put("CONDENSED AP", condensedAveragePrecision(sweep));
+            timer.stop(sweep.getNumJudged());
+        }
+        if (cutoffs.length > 0) {
+            timer = Profiler.start("metric: cutoffs");
+            cutoffMeasures(sweep, judgements, cutoffs, accumulated);
+            timer.stop(cutoffs.length);
+        }
+        timer = Profiler.start("metric: precision, recall");
+        float precision = precision(sweep);
+        float recall = recall(sweep);
+        timer.stop(1);
+        timer = Profiler.start("metric: precision@k");
+        float precToK = precisionAtK(sweep, precisionCutoff);
+        timer.stop(1);
+        timer = Profiler.start("metric: average precision");
+        float averagePrecision = averagePrecision(sweep, averagePrecisionCutoff);
+        timer.stop(Math.min(averagePrecisionCutoff, sweep.size()));
+        timer = Profiler.start("metric: recall-precision");
+        float[] recallPrecision = recallPrecision(sweep);
+        timer.stop(RECALL_PRECISION_LEVELS.length);
+        timer = Profiler.start("metric: interpolated");
+        float[] interpolatedPrecision = interpolatedPrecision(sweep);
+        timer.stop(sweep.size());
+        return new TopicMeasures(infoNeed, key, precision, recall, precToK, averagePrecision, recallPrecision,
+                interpolatedPrecision, accumulated);
+    }
+
+    /**
+     * Computes P@k, R@k, AP@k and NDCG@k of every cutoff in a single walk up to the biggest cutoff.
+     * The number of relevant documents comes from the prefix sums of the sweep, and the sum of precisions and the
+     * discounted gain are accumulated while walking, so every cutoff only reads the running values.
+     * @param sweep Walk of the ranking.
+     * @param judgements Judgements of the information need.
+     * @param cutoffs Sorted cutoffs.
+     * @param retval Map where the measures are added, grouped by measure.
+     */
+    static void cutoffMeasures(RankingSweep sweep, InfoNeedJudgements judgements, int[] cutoffs,
+                               Map<String, Float> retval) {
+        float[] averagePrecision = new float[cutoffs.length];
+        double[] dcg = new double[cutoffs.length];
+        float precisionSum = 0;
+        double gain = 0;
+        int c = 0;
+        int last = Math.min(cutoffs[cutoffs.length - 1], sweep.size());
+        for (int rank = 1; rank <= last; rank++) {
+            int numRelevants = sweep.getNumRelevantRetrieved(rank);
+            if (numRelevants > sweep.getNumRelevantRetrieved(rank - 1)) {
+                precisionSum += ((float) numRelevants) / rank;
+            }
+            if (sweep.getRelevance(rank) > 0) {
+                gain += sweep.getRelevance(rank) * InfoNeedJudgements.discount(rank);
+            }
+            for (; c < cutoffs.length && cutoffs[c] == rank; c++) {
+                averagePrecision[c] = precisionSum / numRelevants;
+                dcg[c] = gain;
+            }
+        }
+        // Cutoffs beyond the end of the ranking see the whole ranking
+        for (; c < cutoffs.length; c++) {
+            averagePrecision[c] = precisionSum / sweep.getNumRelevantRetrieved(last);
+            dcg[c] = gain;
+        }
+
+        for (int k : cutoffs)
+            retval.put("P@" + k, precisionAtK(sweep, k));
+        for (int k : cutoffs)
+            retval.put("R@" + k, (float) sweep.getNumRelevantRetrieved(Math.min(k, sweep.size())) / sweep.getNumRelevant());
+        for (int i = 0; i < cutoffs.length; i++)
+            retval.put("AP@" + cutoffs[i], averagePrecision[i]);
+        for (int i = 0; i < cutoffs.length; i++) {
+            double ideal = judgements.getIdealDcg(cutoffs[i]);
+            retval.put("NDCG@" + cutoffs[i], ideal == 0 ? 0 : (float) (dcg[i] / ideal));
+        }
+    }
+
+    /**
+     * Every measure only depends on the relevance of the documents of the ranking in order and on the relevances of the
+     * judgements of the information need, so the ranking and the judgements identify the measures. The judged documents
+     * keep the ids of the judgements file, which do not depend on the run, and the documents after the last judged one
+     * can not be judged, so they are hashed as unjudged without looking them up: their ids are assigned when the run is
+     * read and change when other information needs of the run change.
+     * @param ranking Ids of the documents recovered in the information need, in order.
+     * @param judgements Judgements of the information need.
+     * @return Hash of the ranking and the judgements of an information need.
+     */
+    static long key(int[] ranking, InfoNeedJudgements judgements) {
+        int numJudged = judgements.getNumJudged();
+        int lastJudged = numJudged > 0 ? judgements.getDocument(numJudged - 1) : -1;
+        long retval = mix(ranking.length);
+        for (int document : ranking) {
+            retval = mix(retval + (document <= lastJudged ? document : -1));
+        }
+        long judged = mix(numJudged);
+        for (int i = 0; i < numJudged; i++) {
+            judged = mix(judged + ((long) judgements.getDocument(i) << 8) + judgements.getRelevanceAt(i));
+        }
+        return mix(retval ^ judged);
+    }
+
+    /**
+     * @return Hash of the configuration of the engine, measures computed with another configuration are not reused.
+     */
+    public long getConfigurationKey() {
+        long retval = mix(mix(precisionCutoff) + averagePrecisionCutoff);
+        for (int k : cutoffs) {
+            retval = mix(retval + k);
+        }
+        retval = mix(retval + (condensed ? 1 : 0));
+        for (Supplier<MetricAccumulator> accumulator : accumulators) {
+            retval = mix(retval + accumulator.get().getName().hashCode());
+        }
+        return retval;
+    }
+
+    private static long mix(long value) {
+        long h = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * @param sweep Walk of the ranking.
+     * @return Fraction of the recovered documents which are not judged, 0 for an empty ranking.
+     */
+    static float unjudgedRate(RankingSweep sweep) {
+        return sweep.size() == 0 ? 0 : (float) (sweep.size() - sweep.getNumJudged()) / sweep.size();
+    }
+
+    /**
+     * Binary preference, like trec_eval: every relevant document retrieved scores less the more judged non relevant
+     * documents are above it. Unjudged documents are skipped.
+     * @param sweep Walk of the ranking.
+     * @param judgements Judgements of the information need.
+     * @return The bpref, 0 without relevant judgements.
+     */
+    static float bpref(RankingSweep sweep, InfoNeedJudgements judgements) {
+        int numRelevant = sweep.getNumRelevant();
+        int bound = Math.min(numRelevant, judgements.getNumJudged() - numRelevant);
+        int nonRelevantAbove = 0;
+        double total = 0;
+        for (int rank = sweep.nextJudged(1); rank <= sweep.size(); rank = sweep.nextJudged(rank + 1)) {
+            if (InfoNeedJudgements.isRelevantGrade(sweep.getRelevance(rank))) {
+                total += bprefOfRelevant(nonRelevantAbove, numRelevant, bound);
+            } else {
+                nonRelevantAbove++;
+            }
+        }
+        return numRelevant == 0 ? 0 : (float) (total / numRelevant);
+    }
+
+    /**
+     * Inferred average precision, like trec_eval: the precision above every relevant document is estimated from the
+     * judged documents above it. Unjudged documents are skipped, every judged document is taken as part of the pool.
+     * @param sweep Walk of the ranking.
+     * @return The infAP, 0 without relevant judgements.
+     */
+    static float inferredAveragePrecision(RankingSweep sweep) {
+        int relevantAbove = 0;
+        int nonRelevantAbove = 0;
+        double total = 0;
+        for (int rank = sweep.nextJudged(1); rank <= sweep.size(); rank = sweep.nextJudged(rank + 1)) {
+            if (InfoNeedJudgements.isRelevantGrade(sweep.getRelevance(rank))) {
+                total += inferredPrecisionOfRelevant(rank, relevantAbove, nonRelevantAbove);
+                relevantAbove++;
+            } else {
+                nonRelevantAbove++;
+            }
+        }
+        return sweep.getNumRelevant() == 0 ? 0 : (float) (total / sweep.getNumRelevant());
+    }
+
+    /**
+     * Average precision of the condensed ranking, the ranking without its unjudged documents, divided by the number of
+     * relevant judgements.
+     * @param sweep Walk of the ranking.
+     * @return The condensed average precision, 0 without relevant judgements.
+     */
+    static float condensedAveragePrecision(RankingSweep sweep) {
+        int judgedAbove = 0;
+        int relevantAbove = 0;
+        double total = 0;
+        for (int rank = sweep.nextJudged(1); rank <= sweep.size(); rank = sweep.nextJudged(rank + 1)) {
+            if (InfoNeedJudgements.isRelevantGrade(sweep.getRelevance(rank))) {
+                total += condensedPrecisionOfRelevant(relevantAbove, judgedAbove);
+                relevantAbove++;
+            }
+            judgedAbove++;
+        }
+        return sweep.getNumRelevant() == 0 ? 0 : (float) (total / sweep.getNumRelevant());
+    }
+
+    /*
+     * The contributions of a relevant document to the measures which skip the unjudged documents. They are shared with
+     * the RankingEvaluator, which computes them in its own walk of the ranking, so both give the same values.
+     */
+
+    /**
+     * @param nonRelevantAbove Number of judged non relevant documents above the relevant document.
+     * @param numRelevant Number of relevant judgements of the information need.
+     * @param bound Minimum of the number of relevant and non relevant judgements of the information need.
+     * @return The contribution of a relevant document to the sum of the bpref.
+     */
+    public static double bprefOfRelevant(int nonRelevantAbove, int numRelevant, int bound) {
+        return nonRelevantAbove == 0 ? 1 : 1 - (double) Math.min(nonRelevantAbove, numRelevant) / bound;
+    }
+
+    /**
+     * @param rank Position of the relevant document in the ranking, starting in 1.
+     * @param relevantAbove Number of judged relevant documents above it.
+     * @param nonRelevantAbove Number of judged non relevant documents above it.
+     * @return The estimated precision at the relevant document, its contribution to the sum of the infAP.
+     */
+    public static double inferredPrecisionOfRelevant(int rank, int relevantAbove, int nonRelevantAbove) {
+        if (rank == 1) {
+            return 1;
+        }
+        double judgedAbove = relevantAbove + nonRelevantAbove;
+        return 1.0 / rank + ((rank - 1.0) / rank) * (judgedAbove / (rank - 1))
+                * ((relevantAbove + INFAP_EPSILON) / (judgedAbove + 2 * INFAP_EPSILON));
+    }
+
+    /**
+     * @param relevantAbove Number of judged relevant documents above the relevant document.
+     * @param judgedAbove Number of judged documents above it.
+     * @return The precision of the condensed ranking at the relevant document, its contribution to the sum of the
+     *         condensed average precision.
+     */
+    public static double condensedPrecisionOfRelevant(int relevantAbove, int judgedAbove) {
+        return (double) (relevantAbove + 1) / (judgedAbove + 1);
+    }
+
+    /**
+     * @param sweep Walk of the ranking.
+     * @return Fraction of the recovered documents which are relevant.
+     */
+    static float precision(RankingSweep sweep) {
+        return (float) sweep.getNumRelevantRetrieved(sweep.size()) / sweep.size();
+    }
+
+    /**
+     * @param sweep Walk of the ranking.
+     * @return Fraction of the relevant documents which are recovered.
+     */
+    static float recall(RankingSweep sweep) {
+        return (float) sweep.getNumRelevantRetrieved(sweep.size()) / sweep.getNumRelevant();
+    }
+
+    /**
+     * @param sweep Walk of the ranking.
+     * @param k Number of the recovered top docs.
+     * @return Fraction of the first k documents which are relevant.
+     */
+    static float precisionAtK(RankingSweep sweep, int k) {
+        return (float) sweep.getNumRelevantRetrieved(Math.min(k, sweep.size())) / k;
+    }
+
+    /**
+     * Average of the precision in the positions of the relevant documents retrieved in the first k documents.
+     * @param sweep Walk of the ranking.
+     * @param k Number of the k top recovered documents.
+     * @return The average precision.
+     */
+    static float averagePrecision(RankingSweep sweep, int k) {
+        int last = Math.min(k, sweep.size());
+        float total = 0;
+        for (int rank = 1; rank <= last; rank++) {
+            int numRelevants = sweep.getNumRelevantRetrieved(rank);
+            if (numRelevants > sweep.getNumRelevantRetrieved(rank - 1)) {
+                total += ((float) numRelevants) / rank;
+            }
+        }
+        return total / sweep.getNumRelevantRetrieved(last);
+    }
+
+    /**
+     * Precision in the first position where every recall level is reached, 0 if it is never reached.
+     * @param sweep Walk of the ranking.
+     * @return The precision of every level of {@link #RECALL_PRECISION_LEVELS}.
+     */
+    static float[] recallPrecision(RankingSweep sweep) {
+        float[] retval = new float[RECALL_PRECISION_LEVELS.length];
+        float totalNumRelevants = sweep.getNumRelevant();
+        int rank = 1;
+        for (int level = 0; level < retval.length; level++) {
+            rank = firstRankWithRecall(sweep, rank, RECALL_PRECISION_LEVELS[level], totalNumRelevants);
+            if (rank <= sweep.size()) {
+                retval[level] = (float) sweep.getNumRelevantRetrieved(rank) / rank;
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Maximum precision in the positions where every recall level is reached.
+     * Recall never decreases along the ranking, so the positions of a level are a suffix of the ranking and the
+     * maximum is taken from a backwards sweep of the precision.
+     * @param sweep Walk of the ranking.
+     * @return The interpolated precision of every level of {@link #INTERPOLATED_RECALL_LEVELS}.
+     */
+    static float[] interpolatedPrecision(RankingSweep sweep) {
+        int n = sweep.size();
+        float[] maxPrecision = new float[n + 2];
+        for (int rank = n; rank >= 1; rank--) {
+            float precision = (float) sweep.getNumRelevantRetrieved(rank) / rank;
+            maxPrecision[rank] = Math.max(precision, maxPrecision[rank + 1]);
+        }
+
+        float[] retval = new float[INTERPOLATED_RECALL_LEVELS.length];
+        float totalNumRelevants = sweep.getNumRelevant();
+        int rank = 1;
+        for (int level = 0; level < retval.length; level++) {
+            rank = firstRankWithRecall(sweep, rank, INTERPOLATED_RECALL_LEVELS[level], totalNumRelevants);
+            retval[level] = maxPrecision[Math.min(rank, n + 1)];
+        }
+        return retval;
+    }
+
+    /**
+     * @param sweep Walk of the ranking.
+     * @param from First position to check, the levels are visited in increasing order.
+     * @param recall Recall level.
+     * @param totalNumRelevants Number of relevant judgements.
+     * @return First position where the recall level is reached, size + 1 if it is never reached.
+     */
+    private static int firstRankWithRecall(RankingSweep sweep, int from, float recall, float totalNumRelevants) {
+        int rank = from;
+        while (rank <= sweep.size() && !((float) sweep.getNumRelevantRetrieved(rank) / totalNumRelevants >= recall)) {
+            rank++;
+        }
+        return rank;
+    }
+}
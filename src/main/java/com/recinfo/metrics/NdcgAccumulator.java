@@ -0,0 +1,44 @@
+package com.recinfo.metrics;
+
+import com.recinfo.collection.InfoNeedJudgements;
+
+/**
+ * Normalized discounted cumulative gain of the first k documents of the ranking.
+ * The gain of a document is its relevance and it is discounted by the logarithm in base 2 of its position plus one.
+ * The result is divided by the gain of the ideal ranking, which is computed when the judgements are loaded.
+ */
+public class NdcgAccumulator implements MetricAccumulator {
+    private final int k;
+    private double idealDcg;
+    private double dcg;
+
+    /**
+     * @param k Number of documents of the ranking which are evaluated.
+     */
+    public NdcgAccumulator(int k) {
+        this.k = k;
+    }
+
+    @Override
+    public String getName() {
+        return "NDCG@" + k;
+    }
+
+    @Override
+    public void start(InfoNeedJudgements judgements) {
+        idealDcg = judgements.getIdealDcg(k);
+        dcg = 0;
+    }
+
+    @Override
+    public void accept(int rank, int relevance, int numRelevantRetrieved) {
+        if (rank <= k && relevance > 0) {
+            dcg += relevance * InfoNeedJudgements.discount(rank);
+        }
+    }
+
+    @Override
+    public float getValue() {
+        return idealDcg == 0 ? 0 : (float) (dcg / idealDcg);
+    }
+}
@@ -0,0 +1,110 @@
+package com.recinfo.metrics;
+
+import com.recinfo.collection.InfoNeedJudgements;
+
+/**
+ * Single walk over the ranking of an information need.
+ * It looks up the relevance of every document once and keeps the number of relevant documents retrieved up to every
+ * position, so every measure can be derived from it without walking the ranking again.
+ */
+public class RankingSweep {
+    // Out of the range of the grades, which are bytes, so documents judged with a negative grade are still judged
+    public static final int UNJUDGED = Integer.MIN_VALUE;
+
+    private final int numRelevant;
+    private final int[] relevances;
+    private final int[] cumulativeRelevant;
+    // Bit rank - 1 is set if the document of the position is judged
+    private final long[] judged;
+    private int numJudged;
+
+    /**
+     * Walks the ranking and feeds every accumulator.
+     * @param ranking Ids of the documents recovered in the information need, in order.
+     * @param judgements Judgements of the information need.
+     * @param accumulators Measures which are computed in the same pass.
+     */
+    public RankingSweep(int[] ranking, InfoNeedJudgements judgements, MetricAccumulator... accumulators) {
+        int n = ranking.length;
+        this.numRelevant = judgements.getNumRelevant();
+        this.relevances = new int[n];
+        this.cumulativeRelevant = new int[n + 1];
+        this.judged = new long[(n + 63) >>> 6];
+
+        for (MetricAccumulator accumulator : accumulators) {
+            accumulator.start(judgements);
+        }
+        for (int rank = 1; rank <= n; rank++) {
+            int relevance = judgements.getRelevance(ranking[rank - 1], UNJUDGED);
+            relevances[rank - 1] = relevance;
+            if (relevance != UNJUDGED) {
+                judged[(rank - 1) >>> 6] |= 1L << (rank - 1);
+                numJudged++;
+            }
+            cumulativeRelevant[rank] = cumulativeRelevant[rank - 1]
+                    + (InfoNeedJudgements.isRelevantGrade(relevance) ? 1 : 0);
+            for (MetricAccumulator accumulator : accumulators) {
+                accumulator.accept(rank, relevance, cumulativeRelevant[rank]);
+            }
+        }
+    }
+
+    /**
+     * @return Number of documents in the ranking.
+     */
+    public int size() {
+        return relevances.length;
+    }
+
+    /**
+     * @return Number of relevant judgements of the information need.
+     */
+    public int getNumRelevant() {
+        return numRelevant;
+    }
+
+    /**
+     * @return Number of documents of the ranking which are judged.
+     */
+    public int getNumJudged() {
+        return numJudged;
+    }
+
+    /**
+     * Finds the next judged document looking at 64 positions at a time, so the unjudged documents of a deep ranking
+     * are skipped without reading their relevance.
+     * @param rank Position in the ranking, starting in 1.
+     * @return The first position from rank (included) whose document is judged, or size + 1 if there is none.
+     */
+    public int nextJudged(int rank) {
+        int index = rank - 1;
+        int word = index >>> 6;
+        if (word >= judged.length) {
+            return relevances.length + 1;
+        }
+        long bits = judged[word] & (-1L << index);
+        while (bits == 0) {
+            if (++word == judged.length) {
+                return relevances.length + 1;
+            }
+            bits = judged[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits) + 1;
+    }
+
+    /**
+     * @param rank Position in the ranking, starting in 1. 0 returns 0.
+     * @return Number of relevant documents retrieved up to the position (included).
+     */
+    public int getNumRelevantRetrieved(int rank) {
+        return cumulativeRelevant[rank];
+    }
+
+    /**
+     * @param rank Position in the ranking, starting in 1.
+     * @return Relevance of the document in the position, or {@link #UNJUDGED}.
+     */
+    public int getRelevance(int rank) {
+        return relevances[rank - 1];
+    }
+}
@@ -0,0 +1,51 @@
+package com.recinfo.metrics;
+
+import com.recinfo.collection.InfoNeedJudgements;
+
+/**
+ * Rank-biased precision of the ranking.
+ * The user goes to the next document with probability p, so the document in position r is weighted by p^(r-1). The gain
+ * of a document is its relevance divided by the highest relevance of the information need, so binary judgements give
+ * the usual rank-biased precision.
+ */
+public class RbpAccumulator implements MetricAccumulator {
+    private final double persistence;
+    private int maxRelevance;
+    private double weight;
+    private double rbp;
+
+    /**
+     * @param persistence Probability of going to the next document, between 0 and 1.
+     */
+    public RbpAccumulator(double persistence) {
+        if (persistence <= 0 || persistence >= 1) {
+            throw new IllegalArgumentException("The persistence of RBP must be between 0 and 1: " + persistence);
+        }
+        this.persistence = persistence;
+    }
+
+    @Override
+    public String getName() {
+        return "RBP(" + persistence + ")";
+    }
+
+    @Override
+    public void start(InfoNeedJudgements judgements) {
+        maxRelevance = judgements.getMaxRelevance();
+        weight = 1 - persistence;
+        rbp = 0;
+    }
+
+    @Override
+    public void accept(int rank, int relevance, int numRelevantRetrieved) {
+        if (relevance > 0) {
+            rbp += weight * relevance / maxRelevance;
+        }
+        weight *= persistence;
+    }
+
+    @Override
+    public float getValue() {
+        return (float) rbp;
+    }
+}
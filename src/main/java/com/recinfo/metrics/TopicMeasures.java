@@ -0,0 +1,150 @@
+package com.recinfo.metrics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measures of a single information need, all of them derived from one {@link RankingSweep}.
+ */
+public class TopicMeasures {
+    private final String infoNeed;
+    private final long key;
+    private final float precision;
+    private final float recall;
+    private final float f1Score;
+    private final float precToK;
+    private final float averagePrecision;
+    private final float[] recallPrecision;
+    private final float[] interpolatedPrecision;
+    private final Map<String, Float> accumulated;
+
+    TopicMeasures(String infoNeed, long key, float precision, float recall, float precToK, float averagePrecision,
+                  float[] recallPrecision, float[] interpolatedPrecision, Map<String, Float> accumulated) {
+        this.infoNeed = infoNeed;
+        this.key = key;
+        this.precision = precision;
+        this.recall = recall;
+        this.f1Score = (2 * precision * recall) / (precision + recall);
+        this.precToK = precToK;
+        this.averagePrecision = averagePrecision;
+        this.recallPrecision = recallPrecision;
+        this.interpolatedPrecision = interpolatedPrecision;
+        this.accumulated = Collections.unmodifiableMap(accumulated);
+    }
+
+    private TopicMeasures(String infoNeed, long key, DataInputStream in) throws IOException {
+        this.infoNeed = infoNeed;
+        this.key = key;
+        this.precision = in.readFloat();
+        this.recall = in.readFloat();
+        this.f1Score = in.readFloat();
+        this.precToK = in.readFloat();
+        this.averagePrecision = in.readFloat();
+        this.recallPrecision = readFloats(in);
+        this.interpolatedPrecision = readFloats(in);
+        Map<String, Float> accumulated = new LinkedHashMap<>();
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            accumulated.put(in.readUTF(), in.readFloat());
+        }
+        this.accumulated = Collections.unmodifiableMap(accumulated);
+    }
+
+    /**
+     * Writes the measures so they can be read with {@link #read(DataInputStream)}.
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeUTF(infoNeed);
+        out.writeLong(key);
+        out.writeFloat(precision);
+        out.writeFloat(recall);
+        out.writeFloat(f1Score);
+        out.writeFloat(precToK);
+        out.writeFloat(averagePrecision);
+        writeFloats(out, recallPrecision);
+        writeFloats(out, interpolatedPrecision);
+        out.writeInt(accumulated.size());
+        for (Map.Entry<String, Float> me : accumulated.entrySet()) {
+            out.writeUTF(me.getKey());
+            out.writeFloat(me.getValue());
+        }
+    }
+
+    static TopicMeasures read(DataInputStream in) throws IOException {
+        String infoNeed = in.readUTF();
+        return new TopicMeasures(infoNeed, in.readLong(), in);
+    }
+
+    private static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+        out.writeInt(values.length);
+        for (float value : values) {
+            out.writeFloat(value);
+        }
+    }
+
+    private static float[] readFloats(DataInputStream in) throws IOException {
+        float[] retval = new float[in.readInt()];
+        for (int i = 0; i < retval.length; i++) {
+            retval[i] = in.readFloat();
+        }
+        return retval;
+    }
+
+    public String getInfoNeed() {
+        return infoNeed;
+    }
+
+    /**
+     * @return Hash of the ranking and judgements which produced these measures.
+     */
+    public long getKey() {
+        return key;
+    }
+
+    public float getPrecision() {
+        return precision;
+    }
+
+    public float getRecall() {
+        return recall;
+    }
+
+    public float getF1Score() {
+        return f1Score;
+    }
+
+    public float getPrecToK() {
+        return precToK;
+    }
+
+    public float getAveragePrecision() {
+        return averagePrecision;
+    }
+
+    /**
+     * @param level Index of the recall level in {@link MetricEngine#RECALL_PRECISION_LEVELS}.
+     * @return Precision when the recall level is reached.
+     */
+    public float getRecallPrecision(int level) {
+        return recallPrecision[level];
+    }
+
+    /**
+     * @param level Index of the recall level in {@link MetricEngine#INTERPOLATED_RECALL_LEVELS}.
+     * @return Interpolated precision of the recall level.
+     */
+    public float getInterpolatedPrecision(int level) {
+        return interpolatedPrecision[level];
+    }
+
+    /**
+     * @return Values of the accumulators registered in the engine, by name.
+     */
+    public Map<String, Float> getAccumulated() {
+        return accumulated;
+    }
+}
@@ -0,0 +1,197 @@
+package com.recinfo.profile;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the wall time, the allocated bytes and the number of processed items of every phase of an evaluation.
+ * It is disabled by default and then {@link #start(String)} only reads a field and returns a shared timer which does
+ * nothing, so the calls can stay in the hot paths. The allocated bytes are read from the allocation counter of the
+ * current thread, a timer must be stopped in the thread where it was started.
+ * Phases can be recorded from several threads at the same time. The memory used by the loaded data structures is
+ * recorded apart from the phases with {@link #recordMemory(String, long, long)}.
+ */
+public final class Profiler {
+    private static final Timer DISABLED = new Timer(null);
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private static boolean enabled;
+    private static boolean allocations;
+    private static final Map<String, Phase> phases = new ConcurrentHashMap<>();
+    private static final List<String> order = new CopyOnWriteArrayList<>();
+    private static final Map<String, Memory> memory = new ConcurrentHashMap<>();
+    private static final List<String> memoryOrder = new CopyOnWriteArrayList<>();
+
+    private Profiler() {
+    }
+
+    /**
+     * Enables the profiler. It must be called before the phases to profile are started.
+     */
+    public static void enable() {
+        allocations = THREADS instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported();
+        if (allocations) {
+            ((com.sun.management.ThreadMXBean) THREADS).setThreadAllocatedMemoryEnabled(true);
+        }
+        enabled = true;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts measuring a phase.
+     * @param phase Name of the phase, the measures of every call with the same name are added.
+     * @return The timer to stop when the phase ends.
+     */
+    public static Timer start(String phase) {
+        if (!enabled) {
+            return DISABLED;
+        }
+        Phase retval = phases.get(phase);
+        if (retval == null) {
+            retval = phases.computeIfAbsent(phase, name -> {
+                order.add(name);
+                return new Phase();
+            });
+        }
+        return new Timer(retval);
+    }
+
+    /**
+     * Records the memory used by a data structure, like the loaded judgements. It does nothing if the profiler is
+     * disabled.
+     * @param structure Name of the data structure, the measures of every call with the same name are added.
+     * @param bytes Approximate number of bytes used by the data structure.
+     * @param items Number of items kept in the data structure, like judgements or documents.
+     */
+    public static void recordMemory(String structure, long bytes, long items) {
+        if (!enabled) {
+            return;
+        }
+        Memory retval = memory.computeIfAbsent(structure, name -> {
+            memoryOrder.add(name);
+            return new Memory();
+        });
+        retval.bytes.add(bytes);
+        retval.items.add(items);
+    }
+
+    /**
+     * @return A table with the measures of every phase, in the order the phases were first started, followed by a
+     *         table with the memory of every recorded data structure.
+     */
+    public static String printSummary() {
+        StringBuilder retval = new StringBuilder();
+        retval.append(String.format(Locale.ROOT, "%-28s%10s%14s%14s%16s%n", "PHASE", "CALLS", "ITEMS", "TIME (ms)",
+                "ALLOCATED (KB)"));
+        for (String name : order) {
+            Phase phase = phases.get(name);
+            retval.append(String.format(Locale.ROOT, "%-28s%10d%14d%14.3f%16s%n", name, phase.calls.sum(),
+                    phase.items.sum(), phase.nanos.sum() / 1e6,
+                    allocations ? Long.toString(phase.bytes.sum() / 1024) : "-"));
+        }
+        if (!memoryOrder.isEmpty()) {
+            retval.append(String.format(Locale.ROOT, "%n%-28s%10s%14s%14s%n", "MEMORY", "KB", "ITEMS", "BYTES/ITEM"));
+            for (String name : memoryOrder) {
+                Memory structure = memory.get(name);
+                long items = structure.items.sum();
+                retval.append(String.format(Locale.ROOT, "%-28s%10d%14d%14.2f%n", name,
+                        structure.bytes.sum() / 1024, items,
+                        items == 0 ? 0 : (double) structure.bytes.sum() / items));
+            }
+        }
+        return retval.toString();
+    }
+
+    /**
+     * Writes the measures of every phase as a JSON array of objects.
+     * @param path File where the measures are written.
+     * @throws IOException If the file can not be written.
+     */
+    public static void writeJson(String path) throws IOException {
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(path))) {
+            out.write("[");
+            for (int i = 0; i < order.size(); i++) {
+                Phase phase = phases.get(order.get(i));
+                out.write(i == 0 ? "\n" : ",\n");
+                out.write("  {\"phase\": \"" + order.get(i).replace("\\", "\\\\").replace("\"", "\\\"")
+                        + "\", \"calls\": " + phase.calls.sum()
+                        + ", \"items\": " + phase.items.sum()
+                        + ", \"nanos\": " + phase.nanos.sum()
+                        + ", \"allocatedBytes\": " + (allocations ? phase.bytes.sum() : -1) + "}");
+            }
+            for (int i = 0; i < memoryOrder.size(); i++) {
+                Memory structure = memory.get(memoryOrder.get(i));
+                out.write(order.isEmpty() && i == 0 ? "\n" : ",\n");
+                out.write("  {\"memory\": \"" + memoryOrder.get(i).replace("\\", "\\\\").replace("\"", "\\\"")
+                        + "\", \"items\": " + structure.items.sum()
+                        + ", \"bytes\": " + structure.bytes.sum() + "}");
+            }
+            out.write("\n]\n");
+        }
+    }
+
+    private static long allocatedBytes() {
+        return allocations ? ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * Measures of a phase added from every call.
+     */
+    private static final class Phase {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder items = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+    }
+
+    /**
+     * Memory of a data structure added from every call.
+     */
+    private static final class Memory {
+        private final LongAdder items = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+    }
+
+    /**
+     * Measure of a single call of a phase.
+     */
+    public static final class Timer {
+        private final Phase phase;
+        private final long startNanos;
+        private final long startBytes;
+
+        private Timer(Phase phase) {
+            this.phase = phase;
+            this.startBytes = phase == null ? 0 : allocatedBytes();
+            this.startNanos = phase == null ? 0 : System.nanoTime();
+        }
+
+        /**
+         * Ends the call of the phase.
+         * @param items Number of items processed in the call, like lines or information needs.
+         */
+        public void stop(long items) {
+            if (phase != null) {
+                long nanos = System.nanoTime() - startNanos;
+                long bytes = allocatedBytes() - startBytes;
+                phase.calls.increment();
+                phase.items.add(items);
+                phase.nanos.add(nanos);
+                phase.bytes.add(bytes);
+            }
+        }
+    }
+}
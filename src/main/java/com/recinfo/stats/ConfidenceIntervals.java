@@ -0,0 +1,99 @@
+package com.recinfo.stats;
+
+import java.util.Arrays;
+
+/**
+ * Percentile bootstrap confidence intervals of the means of several measures over the same topics.
+ * The topics are resampled with replacement and all the measures are resampled together: a resample counts how many
+ * times every topic is drawn and then reads the measures of every topic in order, weighted by that count.
+ * The resamples run with {@link RandomBlocks}, so the intervals only depend on the seed and not on the number of
+ * threads.
+ */
+public class ConfidenceIntervals {
+    private final int threads;
+
+    /**
+     * @param threads Number of threads used to compute the resamples, 0 to use every core.
+     */
+    public ConfidenceIntervals(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param values Measures of every topic, the measures of topic t are in positions t * measures to
+     *               (t + 1) * measures - 1.
+     * @param measures Number of measures of every topic.
+     * @param resamples Number of bootstrap resamples.
+     * @param confidence Confidence level, between 0 and 1.
+     * @param seed Seed of the random generator.
+     * @return The lower bound of every measure followed by the upper bound of every measure. The bounds of a measure
+     * with a value which is not a number are NaN.
+     */
+    public double[] bootstrap(float[] values, int measures, int resamples, double confidence, long seed) {
+        if (confidence <= 0 || confidence >= 1) {
+            throw new IllegalArgumentException("The confidence level must be between 0 and 1: " + confidence);
+        }
+        if (resamples < 1) {
+            throw new IllegalArgumentException("At least one resample is needed: " + resamples);
+        }
+        int n = values.length / measures;
+        double[] means = new double[resamples * measures];
+        RandomBlocks.run(threads, resamples, seed, (block, random, first, count) -> {
+            double[] sums = new double[measures];
+            int[] times = new int[n];
+            for (int r = first; r < first + count; r++) {
+                // The topics drawn are counted first so the measures are read in order
+                Arrays.fill(times, 0);
+                long bits = 0;
+                for (int i = 0; i < n; i++) {
+                    // Two indexes from every random long, scaled with a multiplication instead of a division
+                    if ((i & 1) == 0) {
+                        bits = random.nextLong();
+                    }
+                    times[(int) (((bits & 0xFFFFFFFFL) * n) >>> 32)]++;
+                    bits >>>= 32;
+                }
+                Arrays.fill(sums, 0);
+                for (int topic = 0, offset = 0; topic < n; topic++, offset += measures) {
+                    int t = times[topic];
+                    if (t != 0) {
+                        for (int m = 0; m < measures; m++) {
+                            sums[m] += t * (double) values[offset + m];
+                        }
+                    }
+                }
+                for (int m = 0; m < measures; m++) {
+                    means[r * measures + m] = sums[m] / n;
+                }
+            }
+        });
+
+        double[] retval = new double[2 * measures];
+        double[] column = new double[resamples];
+        double alpha = (1 - confidence) / 2;
+        for (int m = 0; m < measures; m++) {
+            for (int r = 0; r < resamples; r++) {
+                column[r] = means[r * measures + m];
+            }
+            Arrays.sort(column);
+            retval[m] = percentile(column, alpha);
+            retval[measures + m] = percentile(column, 1 - alpha);
+        }
+        return retval;
+    }
+
+    /**
+     * @param sorted Sorted values, NaN values are at the end.
+     * @param p Fraction of the values below the percentile.
+     * @return The percentile interpolated between the closest values, NaN if any value is NaN.
+     */
+    private static double percentile(double[] sorted, double p) {
+        if (Double.isNaN(sorted[sorted.length - 1])) {
+            return Double.NaN;
+        }
+        double position = p * (sorted.length - 1);
+        int low = (int) Math.floor(position);
+        int high = Math.min(low + 1, sorted.length - 1);
+        return sorted[low] + (position - low) * (sorted[high] - sorted[low]);
+    }
+}
@@ -0,0 +1,217 @@
+package com.recinfo.stats;
+
+import com.recinfo.concurrent.Parallel;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+
+/**
+ * Discriminative power of a measure: the paired bootstrap test and the swap rate of every pair of a set of systems
+ * evaluated over the same topics.
+ * The scores are a dense matrix with a row per topic and a column per system. The topics are resampled once for all
+ * the pairs: a resample keeps the sum of the scores of every system weighted by the times every topic is drawn, and the
+ * statistic of a pair is the difference of the sums of its systems. So the resamples cost topics x systems and the
+ * pairs only read the sums, which are visited by blocks of systems that stay in the cache.
+ * The resamples run with {@link RandomBlocks}, so the results only depend on the seed and not on the number of
+ * threads.
+ */
+public class DiscriminativePower {
+    // Systems whose pairs are counted in the same pass over the resamples
+    private static final int BLOCK = 16;
+
+    private final int threads;
+
+    /**
+     * @param threads Number of threads, 0 to use every core.
+     */
+    public DiscriminativePower(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Paired bootstrap test of every pair of systems, the same test as {@link SignificanceTests#bootstrap}: the
+     * differences are shifted to mean 0 and the p-value is the fraction of resamples whose mean difference is at least
+     * as extreme as the observed one.
+     * @param scores Score of every topic and system, the scores of topic t are in positions t * systems to
+     *               (t + 1) * systems - 1.
+     * @param systems Number of systems.
+     * @param iterations Number of bootstrap resamples.
+     * @param seed Seed of the random generator.
+     * @return The p-value of systems a and b in position a * systems + b, computed as (extreme + 1) / (iterations + 1).
+     */
+    public double[] bootstrap(double[] scores, int systems, int iterations, long seed) {
+        int n = scores.length / systems;
+        double[] observed = new double[systems];
+        for (int topic = 0, offset = 0; topic < n; topic++, offset += systems) {
+            for (int s = 0; s < systems; s++) {
+                observed[s] += scores[offset + s];
+            }
+        }
+        double[] sums = new double[iterations * systems];
+        RandomBlocks.run(threads, iterations, seed, (block, random, first, count) -> {
+            int[] times = new int[n];
+            for (int r = first; r < first + count; r++) {
+                // The topics drawn are counted first so the scores are read in order
+                Arrays.fill(times, 0);
+                long bits = 0;
+                for (int i = 0; i < n; i++) {
+                    // Two indexes from every random long, scaled with a multiplication instead of a division
+                    if ((i & 1) == 0) {
+                        bits = random.nextLong();
+                    }
+                    times[(int) (((bits & 0xFFFFFFFFL) * n) >>> 32)]++;
+                    bits >>>= 32;
+                }
+                addWeighted(scores, systems, times, sums, r * systems);
+            }
+        });
+
+        // The resampled differences of the pair are centered on the observed one, which is the null hypothesis
+        int[] extreme = countPairs(sums, systems, iterations, (a, b, sumA, sumB) -> {
+            double difference = observed[a] - observed[b];
+            return Math.abs(sumA - sumB - difference) >= Math.abs(difference) - 1e-12;
+        });
+        double[] retval = new double[systems * systems];
+        for (int i = 0; i < retval.length; i++) {
+            retval[i] = (extreme[i] + 1.0) / (iterations + 1.0);
+        }
+        return retval;
+    }
+
+    /**
+     * Swap rate of every pair of systems: the topics are split at random in two disjoint halves and the pair swaps if
+     * the systems are in a different order in the means of each half.
+     * @param scores Score of every topic and system, the scores of topic t are in positions t * systems to
+     *               (t + 1) * systems - 1.
+     * @param systems Number of systems.
+     * @param trials Number of random splits.
+     * @param seed Seed of the random generator.
+     * @return The fraction of trials where systems a and b swap, in position a * systems + b.
+     */
+    public double[] swapRate(double[] scores, int systems, int trials, long seed) {
+        int n = scores.length / systems;
+        int half = n / 2;
+        // Every trial keeps the sums of the first half followed by the sums of the second half
+        double[] sums = new double[trials * 2 * systems];
+        RandomBlocks.run(threads, trials, seed, (block, random, first, count) -> {
+            int[] topics = new int[n];
+            int[] times = new int[n];
+            for (int r = first; r < first + count; r++) {
+                for (int i = 0; i < n; i++) {
+                    topics[i] = i;
+                }
+                shuffle(topics, half, random);
+                Arrays.fill(times, 0);
+                for (int i = 0; i < half; i++) {
+                    times[topics[i]] = 1;
+                }
+                addWeighted(scores, systems, times, sums, 2 * r * systems);
+                Arrays.fill(times, 0);
+                for (int i = half; i < 2 * half; i++) {
+                    times[topics[i]] = 1;
+                }
+                addWeighted(scores, systems, times, sums, (2 * r + 1) * systems);
+            }
+        });
+
+        int[] swaps = new int[systems * systems];
+        forEachBlock(systems, from -> {
+            int to = Math.min(from + BLOCK, systems);
+            for (int r = 0; r < trials; r++) {
+                int first = 2 * r * systems;
+                int second = first + systems;
+                for (int a = from; a < to; a++) {
+                    for (int b = a + 1; b < systems; b++) {
+                        double d1 = sums[first + a] - sums[first + b];
+                        double d2 = sums[second + a] - sums[second + b];
+                        if ((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0)) {
+                            swaps[a * systems + b]++;
+                        }
+                    }
+                }
+            }
+        });
+        double[] retval = new double[systems * systems];
+        for (int a = 0; a < systems; a++) {
+            for (int b = a + 1; b < systems; b++) {
+                retval[a * systems + b] = (double) swaps[a * systems + b] / trials;
+                retval[b * systems + a] = retval[a * systems + b];
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Adds the scores of every topic, weighted by a count, to the sums of every system.
+     */
+    private static void addWeighted(double[] scores, int systems, int[] times, double[] sums, int row) {
+        for (int topic = 0, offset = 0; topic < times.length; topic++, offset += systems) {
+            int t = times[topic];
+            if (t != 0) {
+                for (int s = 0; s < systems; s++) {
+                    sums[row + s] += t * scores[offset + s];
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves a random sample of the values to the first positions with a partial Fisher-Yates shuffle.
+     */
+    private static void shuffle(int[] values, int count, SplittableRandom random) {
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(values.length - i);
+            int value = values[j];
+            values[j] = values[i];
+            values[i] = value;
+        }
+    }
+
+    /**
+     * Condition of a pair of systems in a resample.
+     */
+    private interface PairTest {
+        boolean test(int a, int b, double sumA, double sumB);
+    }
+
+    /**
+     * Counts the resamples where every pair of systems meets a condition. The systems are visited by blocks, every
+     * block in parallel, and the pairs of a block are counted in a single pass over the resamples.
+     * @param sums Sums of every resample, the sums of resample r start in position r * systems.
+     * @param systems Number of systems.
+     * @param resamples Number of resamples.
+     * @param test Condition of a pair.
+     * @return The count of systems a and b in positions a * systems + b and b * systems + a.
+     */
+    private int[] countPairs(double[] sums, int systems, int resamples, PairTest test) {
+        int[] retval = new int[systems * systems];
+        forEachBlock(systems, from -> {
+            int to = Math.min(from + BLOCK, systems);
+            for (int r = 0, row = 0; r < resamples; r++, row += systems) {
+                for (int a = from; a < to; a++) {
+                    double sumA = sums[row + a];
+                    for (int b = a + 1; b < systems; b++) {
+                        if (test.test(a, b, sumA, sums[row + b])) {
+                            retval[a * systems + b]++;
+                        }
+                    }
+                }
+            }
+        });
+        for (int a = 0; a < systems; a++) {
+            for (int b = a + 1; b < systems; b++) {
+                retval[b * systems + a] = retval[a * systems + b];
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Runs a task for the first system of every block of systems.
+     */
+    private void forEachBlock(int systems, IntConsumer task) {
+        int blocks = (systems + BLOCK - 1) / BLOCK;
+        Parallel.forEach(blocks, threads, i -> task.accept(i * BLOCK));
+    }
+}
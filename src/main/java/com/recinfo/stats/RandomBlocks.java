@@ -0,0 +1,51 @@
+package com.recinfo.stats;
+
+import com.recinfo.concurrent.Parallel;
+
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs the iterations of a randomized procedure split in a fixed number of blocks, in parallel.
+ * Every block has its own generator, split from the seed in order, and always gets the same iterations, so the result
+ * only depends on the seed and not on the number of threads.
+ */
+final class RandomBlocks {
+    static final int BLOCKS = 256;
+
+    private RandomBlocks() {
+    }
+
+    /**
+     * Iterations of a block.
+     */
+    interface Block {
+        /**
+         * @param block Index of the block.
+         * @param random Generator of the block.
+         * @param first Index of the first iteration of the block.
+         * @param iterations Number of iterations of the block.
+         */
+        void run(int block, SplittableRandom random, int first, int iterations);
+    }
+
+    /**
+     * @param threads Number of threads, 1 runs the blocks in order in the current thread and 0 uses every core.
+     * @param iterations Total number of iterations.
+     * @param seed Seed of the generators.
+     * @param block Iterations of every block.
+     */
+    static void run(int threads, int iterations, long seed, Block block) {
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[BLOCKS];
+        for (int i = 0; i < BLOCKS; i++) {
+            randoms[i] = root.split();
+        }
+        IntConsumer runBlock = i -> {
+            int size = iterations / BLOCKS;
+            int extra = iterations % BLOCKS;
+            block.run(i, randoms[i], i * size + Math.min(i, extra), size + (i < extra ? 1 : 0));
+        };
+        Parallel.forEach(BLOCKS, threads, runBlock);
+    }
+}
@@ -0,0 +1,50 @@
+package com.recinfo.stats;
+
+/**
+ * Correlation between the rankings of a set of systems by two measures, like the averages of a measure with two
+ * different sets of judgements.
+ */
+public final class RankCorrelation {
+
+    private RankCorrelation() {
+    }
+
+    /**
+     * Kendall's tau-b between the orders of the systems by two scores. The pairs of systems tied in a score count
+     * neither as concordant nor as discordant.
+     * @param a Score of every system with the first measure.
+     * @param b Score of every system with the second measure, in the same order.
+     * @return The correlation, between -1 and 1. It is 1 if there are less than 2 systems and NaN if every system is
+     *         tied in one of the scores.
+     */
+    public static double kendallTau(double[] a, double[] b) {
+        int n = a.length;
+        if (n < 2) {
+            return 1;
+        }
+        long concordant = 0;
+        long discordant = 0;
+        long tiesA = 0;
+        long tiesB = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                int signA = Double.compare(a[i], a[j]);
+                int signB = Double.compare(b[i], b[j]);
+                if (signA == 0 && signB == 0) {
+                    continue;
+                }
+                if (signA == 0) {
+                    tiesA++;
+                } else if (signB == 0) {
+                    tiesB++;
+                } else if (signA == signB) {
+                    concordant++;
+                } else {
+                    discordant++;
+                }
+            }
+        }
+        return (concordant - discordant)
+                / Math.sqrt((double) (concordant + discordant + tiesA) * (concordant + discordant + tiesB));
+    }
+}
@@ -0,0 +1,236 @@
+package com.recinfo.stats;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Paired significance tests between the per-topic scores of two systems.
+ * The scores of both systems must be in the same order of topics. Every test returns the two-sided p-value.
+ * The randomized tests run their iterations with {@link RandomBlocks}, so the result only depends on the seed and not on
+ * the number of threads.
+ */
+public class SignificanceTests {
+    private final int threads;
+
+    /**
+     * @param threads Number of threads used by the randomized tests, 0 to use every core.
+     */
+    public SignificanceTests(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Paired Student's t-test.
+     * @param a Scores of the first system.
+     * @param b Scores of the second system.
+     * @return The p-value, 1 if there are less than 2 topics or every difference is the same.
+     */
+    public static double pairedTTest(double[] a, double[] b) {
+        int n = a.length;
+        if (n < 2) {
+            return 1;
+        }
+        double mean = 0;
+        for (int i = 0; i < n; i++) {
+            mean += a[i] - b[i];
+        }
+        mean /= n;
+        double variance = 0;
+        for (int i = 0; i < n; i++) {
+            double d = a[i] - b[i] - mean;
+            variance += d * d;
+        }
+        variance /= n - 1;
+        if (variance == 0) {
+            return 1;
+        }
+        double t = mean / Math.sqrt(variance / n);
+        double df = n - 1;
+        return SpecialFunctions.regularizedBeta(df / (df + t * t), df / 2, 0.5);
+    }
+
+    /**
+     * Wilcoxon signed-rank test with the normal approximation, ties get the average rank and the topics without
+     * difference are discarded.
+     * @param a Scores of the first system.
+     * @param b Scores of the second system.
+     * @return The p-value, 1 if there is no difference.
+     */
+    public static double wilcoxon(double[] a, double[] b) {
+        double[] differences = new double[a.length];
+        int n = 0;
+        for (int i = 0; i < a.length; i++) {
+            double d = a[i] - b[i];
+            if (d != 0) {
+                differences[n++] = d;
+            }
+        }
+        if (n == 0) {
+            return 1;
+        }
+        double[] absolute = new double[n];
+        for (int i = 0; i < n; i++) {
+            absolute[i] = Math.abs(differences[i]);
+        }
+        double[] sorted = absolute.clone();
+        Arrays.sort(sorted);
+
+        double positive = 0;
+        for (int i = 0; i < n; i++) {
+            if (differences[i] > 0) {
+                positive += averageRank(sorted, absolute[i]);
+            }
+        }
+        double tieCorrection = 0;
+        for (int i = 0; i < n; ) {
+            int j = i;
+            while (j < n && sorted[j] == sorted[i]) {
+                j++;
+            }
+            double t = j - i;
+            tieCorrection += t * t * t - t;
+            i = j;
+        }
+        double size = n;
+        double mean = size * (size + 1) / 4;
+        double variance = size * (size + 1) * (2 * size + 1) / 24 - tieCorrection / 48;
+        if (variance == 0) {
+            return 1;
+        }
+        double z = (Math.abs(positive - mean) - 0.5) / Math.sqrt(variance);
+        return Math.min(1, 2 * SpecialFunctions.normalUpperTail(Math.max(z, 0)));
+    }
+
+    /**
+     * @return The average of the ranks (starting in 1) of the value in a sorted array.
+     */
+    private static double averageRank(double[] sorted, double value) {
+        int first = lowerBound(sorted, value);
+        int last = lowerBound(sorted, Math.nextUp(value));
+        return (first + 1 + last) / 2.0;
+    }
+
+    private static int lowerBound(double[] sorted, double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Randomization test: the sign of the difference of every topic is swapped at random and the p-value is the
+     * fraction of permutations whose mean difference is at least as extreme as the observed one.
+     * @param a Scores of the first system.
+     * @param b Scores of the second system.
+     * @param iterations Number of permutations.
+     * @param seed Seed of the random generator.
+     * @return The p-value, computed as (extreme + 1) / (iterations + 1).
+     */
+    public double randomization(double[] a, double[] b, int iterations, long seed) {
+        int n = a.length;
+        long[] differences = new long[n];
+        double observed = 0;
+        for (int i = 0; i < n; i++) {
+            differences[i] = Double.doubleToRawLongBits(a[i] - b[i]);
+            observed += a[i] - b[i];
+        }
+        double limit = Math.abs(observed) - 1e-12;
+        long extreme = countRandomized(iterations, seed, (random, count) -> {
+            long retval = 0;
+            for (int it = 0; it < count; it++) {
+                double sum = 0;
+                long bits = 0;
+                for (int i = 0; i < n; i++) {
+                    if ((i & 63) == 0) {
+                        bits = random.nextLong();
+                    }
+                    // The sign bit is flipped without a branch
+                    sum += Double.longBitsToDouble(differences[i] ^ (bits << 63));
+                    bits >>>= 1;
+                }
+                if (Math.abs(sum) >= limit) {
+                    retval++;
+                }
+            }
+            return retval;
+        });
+        return (extreme + 1.0) / (iterations + 1.0);
+    }
+
+    /**
+     * Paired bootstrap test: the differences are shifted to mean 0 (the null hypothesis) and resampled with
+     * replacement, the p-value is the fraction of samples whose mean is at least as extreme as the observed one.
+     * @param a Scores of the first system.
+     * @param b Scores of the second system.
+     * @param iterations Number of bootstrap samples.
+     * @param seed Seed of the random generator.
+     * @return The p-value, computed as (extreme + 1) / (iterations + 1).
+     */
+    public double bootstrap(double[] a, double[] b, int iterations, long seed) {
+        int n = a.length;
+        double[] shifted = new double[n];
+        double observed = 0;
+        for (int i = 0; i < n; i++) {
+            shifted[i] = a[i] - b[i];
+            observed += shifted[i];
+        }
+        double mean = observed / n;
+        for (int i = 0; i < n; i++) {
+            shifted[i] -= mean;
+        }
+        double limit = Math.abs(observed) - 1e-12;
+        long extreme = countRandomized(iterations, seed, (random, count) -> {
+            long retval = 0;
+            for (int it = 0; it < count; it++) {
+                double sum = 0;
+                long bits = 0;
+                for (int i = 0; i < n; i++) {
+                    // Two indexes from every random long, scaled with a multiplication instead of a division
+                    if ((i & 1) == 0) {
+                        bits = random.nextLong();
+                    }
+                    sum += shifted[(int) (((bits & 0xFFFFFFFFL) * n) >>> 32)];
+                    bits >>>= 32;
+                }
+                if (Math.abs(sum) >= limit) {
+                    retval++;
+                }
+            }
+            return retval;
+        });
+        return (extreme + 1.0) / (iterations + 1.0);
+    }
+
+    /**
+     * Iterations of a randomized test run by blocks.
+     */
+    interface Block {
+        /**
+         * @param random Generator of the block.
+         * @param iterations Number of iterations of the block.
+         * @return Number of iterations which are at least as extreme as the observed value.
+         */
+        long run(SplittableRandom random, int iterations);
+    }
+
+    /**
+     * Runs the iterations of a randomized test split in blocks, in parallel.
+     * @return The sum of the counts of every block.
+     */
+    long countRandomized(int iterations, long seed, Block block) {
+        long[] counts = new long[RandomBlocks.BLOCKS];
+        RandomBlocks.run(threads, iterations, seed, (i, random, first, count) -> counts[i] = block.run(random, count));
+        long retval = 0;
+        for (long count : counts) {
+            retval += count;
+        }
+        return retval;
+    }
+}